@@ -0,0 +1,97 @@
+package eu.icred.external.plugin.fidji.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.external.plugin.fidji.read.Reader;
+import eu.icred.external.plugin.fidji.write.Writer;
+import eu.icred.model.node.Container;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+import eu.icred.plugin.worker.output.ExportWorkerConfiguration;
+
+/**
+ * Portfolio size parameters shared by the benchmark states, and helpers to
+ * run the workers.
+ */
+@State(Scope.Benchmark)
+public abstract class Portfolio {
+    private static final String PARAMETER_NAME = "fidji-file";
+
+    @Param({ "100", "1000", "10000" })
+    public int properties;
+
+    @Param({ "10", "50" })
+    public int unitsPerBuilding;
+
+    @Param({ "5" })
+    public int leasesPerProperty;
+
+    @Param({ "20" })
+    public int companies;
+
+    protected FidjiGenerator generator() {
+        return new FidjiGenerator(properties, unitsPerBuilding, leasesPerProperty, companies, 42);
+    }
+
+    protected File generateFile() throws Exception {
+        File file = File.createTempFile("fidji-benchmark", ".xml");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            generator().write(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    static Container read(InputStream in, int parallelism) {
+        return read(in, parallelism, true);
+    }
+
+    static Container read(InputStream in, int parallelism, boolean pooling) {
+        Reader reader = new Reader();
+        reader.setParallelism(parallelism);
+        reader.setPooling(pooling);
+        ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+        config.getStreams().put(PARAMETER_NAME, in);
+        reader.load(config);
+        reader.unload();
+        return reader.getContainer();
+    }
+
+    static void write(Container container, OutputStream out, boolean prettyPrint, int parallelism) {
+        Writer writer = new Writer();
+        writer.setPrettyPrint(prettyPrint);
+        writer.setParallelism(parallelism);
+        ExportWorkerConfiguration config = writer.getRequiredConfigurationArguments();
+        config.getStreams().put(PARAMETER_NAME, out);
+        writer.load(config, container);
+        writer.unload();
+    }
+
+    /**
+     * Discards everything, but counts the bytes.
+     */
+    static class CountingOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+        }
+    }
+}
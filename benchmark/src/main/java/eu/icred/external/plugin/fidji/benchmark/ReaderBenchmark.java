@@ -0,0 +1,64 @@
+package eu.icred.external.plugin.fidji.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.icred.model.node.Container;
+
+/**
+ * <code>Reader.load</code> on a generated file. The file is read through a
+ * {@link FileInputStream}, so <code>parallelism</code> &gt; 1 uses the
+ * memory-mapped chunked import. See {@link RetainedHeap} for the effect of
+ * <code>pooling</code> on the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark extends Portfolio {
+
+    @Param({ "1", "4" })
+    public int parallelism;
+
+    @Param({ "true", "false" })
+    public boolean pooling;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = generateFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Container load() throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return read(in, parallelism, pooling);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package eu.icred.external.plugin.fidji.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.model.node.Container;
+
+/**
+ * Measures the heap retained by the container of <code>Reader.load</code>
+ * with and without value pooling. JMH does not report retained memory, so
+ * this is a plain program; run it with a fixed heap (e.g.
+ * <code>-Xms4g -Xmx4g</code>) for stable numbers.
+ *
+ * Usage: <code>RetainedHeap [properties] [unitsPerBuilding]
+ * [leasesPerProperty] [companies]</code>
+ */
+public class RetainedHeap {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int properties = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int unitsPerBuilding = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int leasesPerProperty = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int companies = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        byte[] input = new FidjiGenerator(properties, unitsPerBuilding, leasesPerProperty, companies, 42).toByteArray();
+        System.out.printf("portfolio: %d properties, %d units per building, %d leases per property, %d companies, %.1f MB%n", properties,
+                unitsPerBuilding, leasesPerProperty, companies, input.length / 1e6);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long plain = retained(input, false);
+            long pooled = retained(input, true);
+            System.out.printf("round %d: without pooling %.1f MB (%.2f x file), with pooling %.1f MB (%.2f x file), saved %.1f MB (%.0f%%)%n",
+                    round + 1, plain / 1e6, (double) plain / input.length, pooled / 1e6, (double) pooled / input.length,
+                    (plain - pooled) / 1e6, 100.0 * (plain - pooled) / plain);
+        }
+    }
+
+    private static long retained(byte[] input, boolean pooling) throws InterruptedException {
+        long before = usedHeap();
+        Container container = Portfolio.read(new ByteArrayInputStream(input), 1, pooling);
+        long after = usedHeap();
+        if (container.getPeriods().isEmpty()) {
+            throw new IllegalStateException("nothing read");
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,49 @@
+package eu.icred.external.plugin.fidji.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.icred.model.node.Container;
+
+/**
+ * Read, write and read again a generated file in memory (sequential mode).
+ * Run with <code>-prof gc</code> to see the allocation rate per round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoundTripBenchmark extends Portfolio {
+
+    private byte[] input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        input = generator().toByteArray();
+    }
+
+    @Benchmark
+    public Container roundTrip() {
+        Container container = read(new ByteArrayInputStream(input), 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+        write(container, out, true, 1);
+
+        return read(new ByteArrayInputStream(out.toByteArray()), 1);
+    }
+}
@@ -0,0 +1,52 @@
+package eu.icred.external.plugin.fidji.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.icred.model.node.Container;
+
+/**
+ * <code>Writer.load</code> of a container read from a generated file into a
+ * stream that only counts the bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriterBenchmark extends Portfolio {
+
+    @Param({ "true", "false" })
+    public boolean prettyPrint;
+
+    @Param({ "1", "4" })
+    public int parallelism;
+
+    private Container container;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        container = read(new ByteArrayInputStream(generator().toByteArray()), 1);
+    }
+
+    @Benchmark
+    public long load() {
+        CountingOutputStream out = new CountingOutputStream();
+        write(container, out, prettyPrint, parallelism);
+        return out.count;
+    }
+}
@@ -0,0 +1,28 @@
+package eu.icred.model.datatype;
+
+import eu.icred.model.datatype.enumeration.AreaMeasurement;
+import eu.icred.model.datatype.enumeration.AreaType;
+
+public class Area {
+    private final Double value;
+    private final AreaMeasurement measurement;
+    private final AreaType type;
+
+    public Area(Double value, AreaMeasurement measurement, AreaType type) {
+        this.value = value;
+        this.measurement = measurement;
+        this.type = type;
+    }
+
+    public Double getValue() {
+        return value;
+    }
+
+    public AreaMeasurement getMeasurement() {
+        return measurement;
+    }
+
+    public AreaType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,5 @@
+package eu.icred.model.datatype.enumeration;
+
+public enum AreaMeasurement {
+    SQM, SQFT
+}
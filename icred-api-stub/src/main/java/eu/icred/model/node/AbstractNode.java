@@ -0,0 +1,4 @@
+package eu.icred.model.node;
+
+public abstract class AbstractNode {
+}
@@ -0,0 +1,17 @@
+package eu.icred.model.node;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class Container extends AbstractNode {
+    private Meta meta = new Meta();
+    private SortedMap<String, Period> periods = new TreeMap<String, Period>();
+
+    public Meta getMeta() {
+        return meta;
+    }
+
+    public SortedMap<String, Period> getPeriods() {
+        return periods;
+    }
+}
@@ -0,0 +1,13 @@
+package eu.icred.model.node;
+
+import eu.icred.model.node.entity.Company;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Data extends AbstractNode {
+    private Map<String, Company> companies = new LinkedHashMap<String, Company>();
+
+    public Map<String, Company> getCompanies() {
+        return companies;
+    }
+}
@@ -0,0 +1,42 @@
+package eu.icred.model.node;
+
+import org.joda.time.LocalDateTime;
+
+public class Meta extends AbstractNode {
+    private String creator;
+    private String format;
+    private String version;
+    private LocalDateTime created;
+
+    public String getCreator() {
+        return creator;
+    }
+
+    public void setCreator(String creator) {
+        this.creator = creator;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    public void setCreated(LocalDateTime created) {
+        this.created = created;
+    }
+}
@@ -0,0 +1,61 @@
+package eu.icred.model.node;
+
+import eu.icred.model.datatype.enumeration.PeriodValueType;
+import org.joda.time.LocalDate;
+
+public class Period extends AbstractNode {
+    private String identifier;
+    private LocalDate from;
+    private LocalDate to;
+    private org.joda.time.Period periodType;
+    private PeriodValueType valueType;
+    private Data data;
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public void setIdentifier(String identifier) {
+        this.identifier = identifier;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public org.joda.time.Period getPeriodType() {
+        return periodType;
+    }
+
+    public void setPeriodType(org.joda.time.Period periodType) {
+        this.periodType = periodType;
+    }
+
+    public PeriodValueType getValueType() {
+        return valueType;
+    }
+
+    public void setValueType(PeriodValueType valueType) {
+        this.valueType = valueType;
+    }
+
+    public Data getData() {
+        return data;
+    }
+
+    public void setData(Data data) {
+        this.data = data;
+    }
+}
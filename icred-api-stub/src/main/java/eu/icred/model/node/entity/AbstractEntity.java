@@ -0,0 +1,33 @@
+package eu.icred.model.node.entity;
+
+import eu.icred.model.node.AbstractNode;
+
+public abstract class AbstractEntity extends AbstractNode {
+    private String objectIdSender;
+    private String objectIdReceiver;
+    private String label;
+
+    public String getObjectIdSender() {
+        return objectIdSender;
+    }
+
+    public void setObjectIdSender(String objectIdSender) {
+        this.objectIdSender = objectIdSender;
+    }
+
+    public String getObjectIdReceiver() {
+        return objectIdReceiver;
+    }
+
+    public void setObjectIdReceiver(String objectIdReceiver) {
+        this.objectIdReceiver = objectIdReceiver;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,25 @@
+package eu.icred.model.node.entity;
+
+import eu.icred.model.node.group.Address;
+import java.util.Map;
+
+public class Building extends AbstractEntity {
+    private Address address;
+    private Map<String, Unit> units;
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public void setAddress(Address address) {
+        this.address = address;
+    }
+
+    public Map<String, Unit> getUnits() {
+        return units;
+    }
+
+    public void setUnits(Map<String, Unit> units) {
+        this.units = units;
+    }
+}
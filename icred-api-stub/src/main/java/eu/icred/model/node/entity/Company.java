@@ -0,0 +1,15 @@
+package eu.icred.model.node.entity;
+
+import java.util.Map;
+
+public class Company extends AbstractEntity {
+    private Map<String, Property> properties;
+
+    public Map<String, Property> getProperties() {
+        return properties;
+    }
+
+    public void setProperties(Map<String, Property> properties) {
+        this.properties = properties;
+    }
+}
@@ -0,0 +1,43 @@
+package eu.icred.model.node.entity;
+
+import java.util.Map;
+import org.joda.time.LocalDate;
+
+public class Lease extends AbstractEntity {
+    private LocalDate beginRentPayment;
+    private LocalDate contractCompletionDate;
+    private LocalDate dmiendOption;
+    private Map<String, LeasedUnit> leasedUnits;
+
+    public LocalDate getBeginRentPayment() {
+        return beginRentPayment;
+    }
+
+    public void setBeginRentPayment(LocalDate beginRentPayment) {
+        this.beginRentPayment = beginRentPayment;
+    }
+
+    public LocalDate getContractCompletionDate() {
+        return contractCompletionDate;
+    }
+
+    public void setContractCompletionDate(LocalDate contractCompletionDate) {
+        this.contractCompletionDate = contractCompletionDate;
+    }
+
+    public LocalDate getDmiendOption() {
+        return dmiendOption;
+    }
+
+    public void setDmiendOption(LocalDate dmiendOption) {
+        this.dmiendOption = dmiendOption;
+    }
+
+    public Map<String, LeasedUnit> getLeasedUnits() {
+        return leasedUnits;
+    }
+
+    public void setLeasedUnits(Map<String, LeasedUnit> leasedUnits) {
+        this.leasedUnits = leasedUnits;
+    }
+}
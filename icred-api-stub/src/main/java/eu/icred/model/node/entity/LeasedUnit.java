@@ -0,0 +1,13 @@
+package eu.icred.model.node.entity;
+
+public class LeasedUnit extends AbstractEntity {
+    private String hash;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+}
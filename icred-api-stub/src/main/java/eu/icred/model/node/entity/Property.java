@@ -0,0 +1,34 @@
+package eu.icred.model.node.entity;
+
+import eu.icred.model.node.group.Address;
+import java.util.Map;
+
+public class Property extends AbstractEntity {
+    private Address address;
+    private Map<String, Building> buildings;
+    private Map<String, Lease> leases;
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public void setAddress(Address address) {
+        this.address = address;
+    }
+
+    public Map<String, Building> getBuildings() {
+        return buildings;
+    }
+
+    public void setBuildings(Map<String, Building> buildings) {
+        this.buildings = buildings;
+    }
+
+    public Map<String, Lease> getLeases() {
+        return leases;
+    }
+
+    public void setLeases(Map<String, Lease> leases) {
+        this.leases = leases;
+    }
+}
@@ -0,0 +1,62 @@
+package eu.icred.model.node.entity;
+
+import eu.icred.model.datatype.Area;
+import eu.icred.model.datatype.enumeration.AreaMeasurement;
+import eu.icred.model.node.group.Address;
+
+public class Unit extends AbstractEntity {
+    private String hash;
+    private Address address;
+    private AreaMeasurement areaMeasurement;
+    private Double numberOfRooms;
+    private Integer lettableUnits;
+    private Area lettableArea;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public void setAddress(Address address) {
+        this.address = address;
+    }
+
+    public AreaMeasurement getAreaMeasurement() {
+        return areaMeasurement;
+    }
+
+    public void setAreaMeasurement(AreaMeasurement areaMeasurement) {
+        this.areaMeasurement = areaMeasurement;
+    }
+
+    public Double getNumberOfRooms() {
+        return numberOfRooms;
+    }
+
+    public void setNumberOfRooms(Double numberOfRooms) {
+        this.numberOfRooms = numberOfRooms;
+    }
+
+    public Integer getLettableUnits() {
+        return lettableUnits;
+    }
+
+    public void setLettableUnits(Integer lettableUnits) {
+        this.lettableUnits = lettableUnits;
+    }
+
+    public Area getLettableArea() {
+        return lettableArea;
+    }
+
+    public void setLettableArea(Area lettableArea) {
+        this.lettableArea = lettableArea;
+    }
+}
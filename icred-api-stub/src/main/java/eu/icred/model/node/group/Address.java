@@ -0,0 +1,42 @@
+package eu.icred.model.node.group;
+
+import eu.icred.model.node.AbstractNode;
+
+public class Address extends AbstractNode {
+    private String street;
+    private String zip;
+    private String city;
+    private String floor;
+
+    public String getStreet() {
+        return street;
+    }
+
+    public void setStreet(String street) {
+        this.street = street;
+    }
+
+    public String getZip() {
+        return zip;
+    }
+
+    public void setZip(String zip) {
+        this.zip = zip;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getFloor() {
+        return floor;
+    }
+
+    public void setFloor(String floor) {
+        this.floor = floor;
+    }
+}
@@ -0,0 +1,18 @@
+package eu.icred.plugin;
+
+import eu.icred.plugin.worker.input.IImportWorker;
+import eu.icred.plugin.worker.output.IExportWorker;
+
+public interface IPlugin {
+    boolean isModelVersionSupported(String version);
+
+    String getPluginId();
+
+    String getPluginVersion();
+
+    String getPluginName();
+
+    IImportWorker getImportPlugin();
+
+    IExportWorker getExportPlugin();
+}
@@ -0,0 +1,4 @@
+package eu.icred.plugin;
+
+public abstract class PluginComponent<T> {
+}
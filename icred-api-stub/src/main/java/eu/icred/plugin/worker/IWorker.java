@@ -0,0 +1,18 @@
+package eu.icred.plugin.worker;
+
+import java.util.List;
+
+import eu.icred.model.datatype.enumeration.Subset;
+import eu.icred.plugin.PluginComponent;
+
+public interface IWorker<T extends WorkerConfiguration> {
+    List<Subset> getSupportedSubsets();
+
+    void load(WorkerConfiguration config);
+
+    void unload();
+
+    T getRequiredConfigurationArguments();
+
+    PluginComponent<T> getConfigGui();
+}
@@ -0,0 +1,4 @@
+package eu.icred.plugin.worker;
+
+public class WorkerConfiguration {
+}
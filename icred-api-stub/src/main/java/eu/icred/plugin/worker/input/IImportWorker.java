@@ -0,0 +1,10 @@
+package eu.icred.plugin.worker.input;
+
+import eu.icred.model.node.Container;
+import eu.icred.plugin.worker.IWorker;
+
+public interface IImportWorker extends IWorker<ImportWorkerConfiguration> {
+    void load(ImportWorkerConfiguration config);
+
+    Container getContainer();
+}
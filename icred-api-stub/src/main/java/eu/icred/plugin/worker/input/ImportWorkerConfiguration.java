@@ -0,0 +1,15 @@
+package eu.icred.plugin.worker.input;
+
+import java.io.InputStream;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import eu.icred.plugin.worker.WorkerConfiguration;
+
+public class ImportWorkerConfiguration extends WorkerConfiguration {
+    private final SortedMap<String, InputStream> streams = new TreeMap<String, InputStream>();
+
+    public SortedMap<String, InputStream> getStreams() {
+        return streams;
+    }
+}
@@ -0,0 +1,15 @@
+package eu.icred.plugin.worker.output;
+
+import java.io.OutputStream;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import eu.icred.plugin.worker.WorkerConfiguration;
+
+public class ExportWorkerConfiguration extends WorkerConfiguration {
+    private final SortedMap<String, OutputStream> streams = new TreeMap<String, OutputStream>();
+
+    public SortedMap<String, OutputStream> getStreams() {
+        return streams;
+    }
+}
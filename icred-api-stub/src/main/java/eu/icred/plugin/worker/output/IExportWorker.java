@@ -0,0 +1,8 @@
+package eu.icred.plugin.worker.output;
+
+import eu.icred.model.node.Container;
+import eu.icred.plugin.worker.IWorker;
+
+public interface IExportWorker extends IWorker<ExportWorkerConfiguration> {
+    void load(ExportWorkerConfiguration config, Container container);
+}
@@ -3,6 +3,16 @@
  */
 package eu.icred.external.plugin.fidji;
 
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import eu.icred.external.plugin.fidji.metrics.FidjiMetrics;
+import eu.icred.external.plugin.fidji.read.BatchReader;
 import eu.icred.external.plugin.fidji.read.Reader;
 import eu.icred.external.plugin.fidji.write.Writer;
 import eu.icred.plugin.IPlugin;
@@ -14,6 +24,37 @@ import eu.icred.plugin.worker.output.IExportWorker;
  *
  */
 public class Plugin implements IPlugin {
+    private static Logger logger = Logger.getLogger(Plugin.class);
+
+    public static final String METRICS_NAME = "eu.icred.external.plugin.fidji:type=Metrics";
+
+    /**
+     * Shared by all workers of this plugin. Disabled unless the system
+     * property <code>fidji.metrics</code> is <code>true</code>; can be
+     * switched on and read through JMX under {@link #METRICS_NAME}, where it
+     * replaces the metrics of a previously loaded instance of this plugin.
+     */
+    private static final FidjiMetrics METRICS = new FidjiMetrics();
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(METRICS_NAME);
+            if (server.isRegistered(name)) {
+                // left behind by an earlier instance of this plugin, e.g. before a reload
+                try {
+                    server.unregisterMBean(name);
+                } catch (InstanceNotFoundException e) {
+                }
+            }
+            server.registerMBean(METRICS, name);
+        } catch (Exception e) {
+            logger.warn("could not register metrics MBean", e);
+        }
+    }
+
+    public static FidjiMetrics getMetrics() {
+        return METRICS;
+    }
 
     /* (non-Javadoc)
      * @see eu.icred.plugin.IPlugin#isModelVersionSupported(java.lang.String)
@@ -52,7 +93,18 @@ public class Plugin implements IPlugin {
      */
     @Override
     public IImportWorker getImportPlugin() {
-        return new Reader();
+        Reader reader = new Reader();
+        reader.setMetrics(METRICS);
+        return reader;
+    }
+
+    /**
+     * @return a {@link BatchReader} reporting to {@link #getMetrics()}
+     */
+    public BatchReader getBatchImportPlugin() {
+        BatchReader reader = new BatchReader();
+        reader.setMetrics(METRICS);
+        return reader;
     }
 
     /* (non-Javadoc)
@@ -60,7 +112,9 @@ public class Plugin implements IPlugin {
      */
     @Override
     public IExportWorker getExportPlugin() {
-        return new Writer();
+        Writer writer = new Writer();
+        writer.setMetrics(METRICS);
+        return writer;
     }
 
 }
@@ -0,0 +1,86 @@
+package eu.icred.external.plugin.fidji.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import eu.icred.model.node.entity.Company;
+
+/**
+ * Maps property sender ids to the company that references them (via
+ * <code>gHO02 idRef-AST</code>). The first company linking a property
+ * wins; if it is {@link #remove(Company) removed} (because a later
+ * <code>gHO00</code> with the same id replaced it), the next one does.
+ */
+public class CompanyIndex {
+    private final Map<String, Company> companies = new HashMap<String, Company>();
+    /** Further companies linking a property, in link order; rarely used. */
+    private final Map<String, List<Company>> others = new HashMap<String, List<Company>>();
+
+    public void link(String propertyId, Company company) {
+        Company first = companies.get(propertyId);
+        if (first == null) {
+            companies.put(propertyId, company);
+            return;
+        }
+        if (first == company) {
+            return;
+        }
+
+        List<Company> linked = others.get(propertyId);
+        if (linked == null) {
+            linked = new ArrayList<Company>(2);
+            others.put(propertyId, linked);
+        } else if (contains(linked, company)) {
+            return;
+        }
+        linked.add(company);
+    }
+
+    /**
+     * Forgets all links of <code>company</code>.
+     */
+    public void remove(Company company) {
+        if (company.getProperties() == null) {
+            return;
+        }
+        for (String propertyId : company.getProperties().keySet()) {
+            List<Company> linked = others.get(propertyId);
+            if (companies.get(propertyId) == company) {
+                if (linked == null) {
+                    companies.remove(propertyId);
+                } else {
+                    companies.put(propertyId, linked.remove(0));
+                }
+            } else if (linked != null) {
+                for (Iterator<Company> it = linked.iterator(); it.hasNext();) {
+                    if (it.next() == company) {
+                        it.remove();
+                    }
+                }
+            }
+            if (linked != null && linked.isEmpty()) {
+                others.remove(propertyId);
+            }
+        }
+    }
+
+    /**
+     * @return the company the property <code>propertyId</code> belongs to or
+     *         <code>null</code>
+     */
+    public Company getCompany(String propertyId) {
+        return companies.get(propertyId);
+    }
+
+    private static boolean contains(List<Company> companies, Company company) {
+        for (Company linked : companies) {
+            if (linked == company) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package eu.icred.external.plugin.fidji.index;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the hashes that identify units and leased units across a
+ * container.
+ *
+ * The hash is the MD5 of parent type, parent id and unit id, written as a
+ * hexadecimal number without leading zeros (the same string as
+ * <code>new BigInteger(1, md5).toString(16)</code>). Every thread reuses its
+ * own digester and character buffer.
+ */
+public final class UnitHash {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<UnitHash> INSTANCES = new ThreadLocal<UnitHash>() {
+        @Override
+        protected UnitHash initialValue() {
+            return new UnitHash();
+        }
+    };
+
+    private final MessageDigest md;
+    private final char[] chars = new char[32];
+
+    private UnitHash() {
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+        }
+        md = digest;
+    }
+
+    public static String of(String parentType, String parentId, String unitId) {
+        return INSTANCES.get().hash(parentType, parentId, unitId);
+    }
+
+    private String hash(String parentType, String parentId, String unitId) {
+        if (md == null) {
+            return parentType + "-" + parentId + "-" + unitId;
+        }
+
+        md.reset();
+        md.update(parentType.getBytes());
+        md.update(parentId.getBytes());
+        md.update(unitId.getBytes());
+        byte[] digest = md.digest();
+
+        int length = 0;
+        for (byte b : digest) {
+            int high = (b >> 4) & 0xf;
+            int low = b & 0xf;
+            if (length > 0 || high != 0) {
+                chars[length++] = HEX[high];
+            }
+            if (length > 0 || low != 0) {
+                chars[length++] = HEX[low];
+            }
+        }
+        if (length == 0) {
+            return "0";
+        }
+
+        return new String(chars, 0, length);
+    }
+}
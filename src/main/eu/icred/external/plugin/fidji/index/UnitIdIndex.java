@@ -0,0 +1,66 @@
+package eu.icred.external.plugin.fidji.index;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import eu.icred.model.node.entity.Building;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+import eu.icred.model.node.entity.Unit;
+
+/**
+ * Resolves unit hashes to the sender ids of the units, per property.
+ *
+ * The index is built once for all properties of the given companies and is
+ * read-only afterwards. If two units of a property share a hash, the first
+ * one in iteration order wins, as with a linear search.
+ */
+public class UnitIdIndex {
+    private final Map<Property, Map<String, String>> unitIds = new IdentityHashMap<Property, Map<String, String>>();
+
+    public UnitIdIndex(Collection<Company> companies) {
+        for (Company company : companies) {
+            Map<String, Property> props = company.getProperties();
+            if (props != null) {
+                for (Property prop : props.values()) {
+                    if (prop != null && !unitIds.containsKey(prop)) {
+                        unitIds.put(prop, index(prop));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> index(Property prop) {
+        Map<String, String> ids = new HashMap<String, String>();
+        Map<String, Building> builds = prop.getBuildings();
+        if (builds != null) {
+            for (Building build : builds.values()) {
+                Map<String, Unit> units = build.getUnits();
+                if (units != null) {
+                    for (Unit unit : units.values()) {
+                        String hash = unit.getHash();
+                        if (hash != null && !ids.containsKey(hash)) {
+                            ids.put(hash, unit.getObjectIdSender());
+                        }
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return the sender id of the unit of <code>prop</code> with the hash
+     *         <code>hash</code> or <code>null</code>
+     */
+    public String getUnitId(Property prop, String hash) {
+        Map<String, String> ids = unitIds.get(prop);
+        if (ids == null) {
+            ids = index(prop);
+        }
+        return ids.get(hash);
+    }
+}
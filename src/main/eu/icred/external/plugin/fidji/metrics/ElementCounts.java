@@ -0,0 +1,18 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+/**
+ * Element counters of a single thread. The workers count into an instance of
+ * this class and add it to the shared {@link FidjiMetrics} once at the end,
+ * so counting never touches shared memory.
+ */
+public final class ElementCounts {
+    private final long[] counts = new long[Entity.values().length];
+
+    public void increment(Entity entity) {
+        counts[entity.ordinal()]++;
+    }
+
+    public long get(Entity entity) {
+        return counts[entity.ordinal()];
+    }
+}
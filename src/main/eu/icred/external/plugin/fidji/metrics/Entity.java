@@ -0,0 +1,17 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+/**
+ * FIDJI elements counted by {@link FidjiMetrics}.
+ */
+public enum Entity {
+    /** property/building */
+    AST00,
+    /** unit */
+    PRT00,
+    /** lease */
+    LEA00,
+    /** leased unit */
+    ALP00,
+    /** company */
+    GHO00
+}
@@ -0,0 +1,276 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timings of the FIDJI import and export.
+ *
+ * The workers only record anything while the metrics are enabled; they check
+ * {@link #isEnabled()} once per run. The element counts are kept in a plain
+ * {@link ElementCounts} array either way (one increment per element) and
+ * only added here if enabled; bytes and timings are not measured at all
+ * while disabled. The per-entity latency histogram (time to read or write one
+ * <code>AST00</code>) has its own switch because it needs two
+ * {@link System#nanoTime()} calls per entity.
+ */
+public class FidjiMetrics implements FidjiMetricsMBean {
+    private volatile boolean enabled = false;
+    private volatile boolean histogramEnabled = false;
+
+    private final AtomicLong imports = new AtomicLong();
+    private final AtomicLong exports = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLongArray elementsRead = new AtomicLongArray(Entity.values().length);
+    private final AtomicLongArray elementsWritten = new AtomicLongArray(Entity.values().length);
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+    private final LatencyHistogram entityLatency = new LatencyHistogram();
+
+    private final List<IMetricsListener> listeners = new CopyOnWriteArrayList<IMetricsListener>();
+
+    public FidjiMetrics() {
+        this(Boolean.getBoolean("fidji.metrics"));
+    }
+
+    public FidjiMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void addListener(IMetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(IMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void importStarted() {
+        imports.incrementAndGet();
+    }
+
+    public void exportStarted() {
+        exports.incrementAndGet();
+    }
+
+    public void failed() {
+        failures.incrementAndGet();
+    }
+
+    public void elementsRead(ElementCounts counts) {
+        add(elementsRead, counts);
+    }
+
+    public void elementsWritten(ElementCounts counts) {
+        add(elementsWritten, counts);
+    }
+
+    /**
+     * Records a completed phase and notifies the listeners.
+     *
+     * @param bytes
+     *            bytes read ({@link Phase#PARSE}) or written
+     *            ({@link Phase#SERIALIZE}) in the phase
+     */
+    public void phaseCompleted(Phase phase, long nanos, long bytes) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+        if (phase == Phase.PARSE) {
+            bytesRead.addAndGet(bytes);
+        } else if (phase == Phase.SERIALIZE) {
+            bytesWritten.addAndGet(bytes);
+        }
+
+        for (IMetricsListener listener : listeners) {
+            listener.phaseCompleted(phase, nanos, bytes);
+        }
+    }
+
+    public long getElementsRead(Entity entity) {
+        return elementsRead.get(entity.ordinal());
+    }
+
+    public long getElementsWritten(Entity entity) {
+        return elementsWritten.get(entity.ordinal());
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    public LatencyHistogram getEntityLatency() {
+        return entityLatency;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isHistogramEnabled() {
+        return histogramEnabled;
+    }
+
+    @Override
+    public void setHistogramEnabled(boolean histogramEnabled) {
+        this.histogramEnabled = histogramEnabled;
+    }
+
+    @Override
+    public long getImports() {
+        return imports.get();
+    }
+
+    @Override
+    public long getExports() {
+        return exports.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getPropertiesRead() {
+        return getElementsRead(Entity.AST00);
+    }
+
+    @Override
+    public long getUnitsRead() {
+        return getElementsRead(Entity.PRT00);
+    }
+
+    @Override
+    public long getLeasesRead() {
+        return getElementsRead(Entity.LEA00);
+    }
+
+    @Override
+    public long getLeasedUnitsRead() {
+        return getElementsRead(Entity.ALP00);
+    }
+
+    @Override
+    public long getCompaniesRead() {
+        return getElementsRead(Entity.GHO00);
+    }
+
+    @Override
+    public long getPropertiesWritten() {
+        return getElementsWritten(Entity.AST00);
+    }
+
+    @Override
+    public long getUnitsWritten() {
+        return getElementsWritten(Entity.PRT00);
+    }
+
+    @Override
+    public long getLeasesWritten() {
+        return getElementsWritten(Entity.LEA00);
+    }
+
+    @Override
+    public long getLeasedUnitsWritten() {
+        return getElementsWritten(Entity.ALP00);
+    }
+
+    @Override
+    public long getCompaniesWritten() {
+        return getElementsWritten(Entity.GHO00);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public long getParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.PARSE));
+    }
+
+    @Override
+    public long getLinkMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.LINK));
+    }
+
+    @Override
+    public long getSerializeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.SERIALIZE));
+    }
+
+    @Override
+    public long getReadThroughput() {
+        return perSecond(getBytesRead(), getPhaseNanos(Phase.PARSE));
+    }
+
+    @Override
+    public long getWriteThroughput() {
+        return perSecond(getBytesWritten(), getPhaseNanos(Phase.SERIALIZE));
+    }
+
+    @Override
+    public long getEntityLatencyCount() {
+        return entityLatency.getCount();
+    }
+
+    @Override
+    public long getEntityLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(entityLatency.getPercentile(50));
+    }
+
+    @Override
+    public long getEntityLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(entityLatency.getPercentile(99));
+    }
+
+    @Override
+    public void reset() {
+        imports.set(0);
+        exports.set(0);
+        failures.set(0);
+        for (int i = 0; i < elementsRead.length(); i++) {
+            elementsRead.set(i, 0);
+            elementsWritten.set(i, 0);
+        }
+        bytesRead.set(0);
+        bytesWritten.set(0);
+        for (int i = 0; i < phaseNanos.length(); i++) {
+            phaseNanos.set(i, 0);
+        }
+        entityLatency.reset();
+    }
+
+    private static void add(AtomicLongArray totals, ElementCounts counts) {
+        for (Entity entity : Entity.values()) {
+            long count = counts.get(entity);
+            if (count != 0) {
+                totals.addAndGet(entity.ordinal(), count);
+            }
+        }
+    }
+
+    private static long perSecond(long amount, long nanos) {
+        return nanos == 0 ? 0 : (long) (amount * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+    }
+}
@@ -0,0 +1,70 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+/**
+ * JMX view of {@link FidjiMetrics}. All counters and times are totals since
+ * the last {@link #reset()}.
+ */
+public interface FidjiMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    boolean isHistogramEnabled();
+
+    void setHistogramEnabled(boolean histogramEnabled);
+
+    long getImports();
+
+    long getExports();
+
+    long getFailures();
+
+    long getPropertiesRead();
+
+    long getUnitsRead();
+
+    long getLeasesRead();
+
+    long getLeasedUnitsRead();
+
+    long getCompaniesRead();
+
+    long getPropertiesWritten();
+
+    long getUnitsWritten();
+
+    long getLeasesWritten();
+
+    long getLeasedUnitsWritten();
+
+    long getCompaniesWritten();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getParseMillis();
+
+    long getLinkMillis();
+
+    long getSerializeMillis();
+
+    /**
+     * @return bytes read per second of parse time
+     */
+    long getReadThroughput();
+
+    /**
+     * @return bytes written per second of serialization time
+     */
+    long getWriteThroughput();
+
+    long getEntityLatencyCount();
+
+    long getEntityLatencyP50Micros();
+
+    long getEntityLatencyP99Micros();
+
+    void reset();
+}
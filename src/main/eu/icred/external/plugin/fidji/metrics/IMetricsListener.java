@@ -0,0 +1,17 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+/**
+ * Is notified by {@link FidjiMetrics} whenever an import or export phase has
+ * been completed.
+ */
+public interface IMetricsListener {
+
+    /**
+     * @param nanos
+     *            wall time of the phase
+     * @param bytes
+     *            bytes read (for {@link Phase#PARSE}) or written (for
+     *            {@link Phase#SERIALIZE}) in the phase, otherwise 0
+     */
+    void phaseCompleted(Phase phase, long nanos, long bytes);
+}
@@ -0,0 +1,13 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+/**
+ * Timed phases of an import or export.
+ */
+public enum Phase {
+    /** reading the XML into entities */
+    PARSE,
+    /** linking the properties to their companies */
+    LINK,
+    /** writing the XML */
+    SERIALIZE
+}
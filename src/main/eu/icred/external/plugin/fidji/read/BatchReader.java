@@ -0,0 +1,295 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import eu.icred.external.plugin.fidji.metrics.FidjiMetrics;
+import eu.icred.model.datatype.enumeration.Subset;
+import eu.icred.model.node.Container;
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+import eu.icred.model.node.group.Address;
+import eu.icred.plugin.PluginComponent;
+import eu.icred.plugin.worker.WorkerConfiguration;
+import eu.icred.plugin.worker.input.IImportWorker;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+
+/**
+ * Imports many FIDJI files (e.g. one per month and fund) into one
+ * {@link Container}.
+ *
+ * Every stream of the configuration and every <code>*.xml</code> file of the
+ * {@link #setDirectory(File) directory} is read by its own {@link Reader} on
+ * a pool of {@link #setParallelism(int) parallelism} threads. The periods are
+ * merged in input order (streams by name, then files by name): files with the
+ * same situation month end up in one {@link Period}, a company found in
+ * several of them is merged into the first one read. All readers of a batch
+ * use the same {@link ValuePool}, so repeated values are shared between the
+ * periods as well; with {@link #setSharedAddresses(boolean)} this includes
+ * whole addresses.
+ *
+ * Files that can not be read are logged and skipped. Use
+ * {@link eu.icred.external.plugin.fidji.Plugin#getBatchImportPlugin()} to get
+ * an instance reporting to the plugin's metrics.
+ */
+public class BatchReader implements IImportWorker {
+    private static Logger logger = Logger.getLogger(BatchReader.class);
+
+    private Container container = null;
+
+    private File directory = null;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private FidjiMetrics metrics = null;
+    private boolean sharedAddresses = false;
+
+    @Override
+    public List<Subset> getSupportedSubsets() {
+        return Arrays.asList(Reader.SUPPORTED_SUBSETS);
+    }
+
+    @Override
+    public void load(WorkerConfiguration config) {
+        throw new RuntimeException("not allowed");
+    }
+
+    @Override
+    public void unload() {
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Directory whose <code>*.xml</code> files are imported in addition to
+     * the streams of the configuration, <code>null</code> (the default) for
+     * none.
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Maximum number of files read at the same time. The default is the
+     * number of available processors.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public FidjiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Metrics the readers of the single files report to, <code>null</code>
+     * (the default) for none.
+     */
+    public void setMetrics(FidjiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public boolean isSharedAddresses() {
+        return sharedAddresses;
+    }
+
+    /**
+     * <code>true</code> lets units and properties with equal address fields
+     * share one {@link Address} instance, also across periods. Changing such
+     * an address changes it for all of them, so only use this if the
+     * container is not modified. The default is <code>false</code>.
+     */
+    public void setSharedAddresses(boolean sharedAddresses) {
+        this.sharedAddresses = sharedAddresses;
+    }
+
+    @Override
+    public void load(ImportWorkerConfiguration config) {
+        container = Reader.createContainer();
+        ValuePool values = new ValuePool(sharedAddresses);
+
+        List<Source> sources = new ArrayList<Source>();
+        for (Map.Entry<String, InputStream> stream : config.getStreams().entrySet()) {
+            if (stream.getValue() != null) {
+                sources.add(new Source(stream.getKey(), stream.getValue(), null, values));
+            }
+        }
+        if (directory != null) {
+            File[] files = directory.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.isFile() && file.getName().toLowerCase().endsWith(".xml");
+                }
+            });
+            if (files == null) {
+                logger.error("could not list " + directory);
+            } else {
+                Arrays.sort(files);
+                for (File file : files) {
+                    sources.add(new Source(file.getName(), null, file, values));
+                }
+            }
+        }
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, sources.size())));
+        try {
+            List<Future<Period>> periods = new ArrayList<Future<Period>>();
+            for (Source source : sources) {
+                periods.add(pool.submit(source));
+            }
+
+            for (int i = 0; i < periods.size(); i++) {
+                Period period;
+                try {
+                    period = periods.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.error("could not read " + sources.get(i).name, e.getCause());
+                    continue;
+                }
+                if (period != null) {
+                    merge(period);
+                } else {
+                    logger.warn("skipped " + sources.get(i).name);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.error("interrupted while reading FIDJI files", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void merge(Period period) {
+        Period known = container.getPeriods().get(period.getIdentifier());
+        if (known == null) {
+            container.getPeriods().put(period.getIdentifier(), period);
+            return;
+        }
+
+        Map<String, Company> companies = known.getData().getCompanies();
+        for (Company company : period.getData().getCompanies().values()) {
+            Company knownCompany = companies.get(company.getObjectIdSender());
+            if (knownCompany == null) {
+                companies.put(company.getObjectIdSender(), company);
+            } else {
+                merge(knownCompany, company);
+            }
+        }
+    }
+
+    /**
+     * Adds the properties of <code>company</code> to <code>target</code>; a
+     * property already linked to <code>target</code> is kept.
+     */
+    private static void merge(Company target, Company company) {
+        if (target.getLabel() == null) {
+            target.setLabel(company.getLabel());
+        }
+
+        Map<String, Property> properties = company.getProperties();
+        if (properties == null) {
+            return;
+        }
+        Map<String, Property> targetProperties = target.getProperties();
+        if (targetProperties == null) {
+            target.setProperties(properties);
+            return;
+        }
+        for (Map.Entry<String, Property> property : properties.entrySet()) {
+            if (targetProperties.get(property.getKey()) == null) {
+                targetProperties.put(property.getKey(), property.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads one stream or file into a period, <code>null</code> if nothing
+     * could be read.
+     */
+    private class Source implements Callable<Period> {
+        private final String name;
+        private final InputStream stream;
+        private final File file;
+        private final ValuePool values;
+
+        Source(String name, InputStream stream, File file, ValuePool values) {
+            this.name = name;
+            this.stream = stream;
+            this.file = file;
+            this.values = values;
+        }
+
+        @Override
+        public Period call() throws Exception {
+            InputStream in = stream;
+            if (in == null) {
+                try {
+                    in = new FileInputStream(file);
+                } catch (IOException e) {
+                    logger.error("could not open " + file, e);
+                    return null;
+                }
+            }
+
+            Reader reader = new Reader();
+            try {
+                reader.setValuePool(values);
+                reader.setMetrics(metrics);
+                ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+                config.getStreams().put(Reader.PARAMETER_NAME, in);
+                reader.load(config);
+
+                Container read = reader.getContainer();
+                if (read == null || read.getPeriods().isEmpty()) {
+                    return null;
+                }
+                return read.getPeriods().values().iterator().next();
+            } finally {
+                reader.unload();
+                if (stream == null) {
+                    in.close();
+                }
+            }
+        }
+    }
+
+    @Override
+    public ImportWorkerConfiguration getRequiredConfigurationArguments() {
+        // any number of streams, see load
+        return new ImportWorkerConfiguration();
+    }
+
+    @Override
+    public PluginComponent<ImportWorkerConfiguration> getConfigGui() {
+        // null => DefaultConfigGui
+        return null;
+    }
+
+    @Override
+    public Container getContainer() {
+        return container;
+    }
+}
@@ -0,0 +1,226 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the top-level <code>AST00</code> (below <code>ASTl</code>) and
+ * <code>gHO00</code> (below <code>gHOl</code>) elements of a FIDJI file
+ * without parsing it.
+ *
+ * The scanner only tokenizes tags, comments, CDATA sections and processing
+ * instructions. It gives up (returns <code>null</code>) on anything that
+ * could change the meaning of a slice taken out of its context, i.e. a
+ * document type declaration or a prefixed root element, and on malformed
+ * markup; the caller then reads the file sequentially. The same applies to
+ * documents where not every element below <code>ASTl</code> and
+ * <code>gHOl</code> would be sliced (e.g. <code>&lt;x:AST00&gt;</code> or
+ * any other child), since the skeleton is read before the slices and the
+ * order of the entities would change.
+ */
+final class BoundaryScanner {
+
+    /**
+     * Byte range of one <code>AST00</code> or <code>gHO00</code> element and
+     * of the start tag of its parent list element.
+     */
+    static final class Slice {
+        final long start;
+        final long end;
+        final long parentStart;
+        final long parentEnd;
+        final String parentName;
+
+        Slice(long start, long end, long parentStart, long parentEnd, String parentName) {
+            this.start = start;
+            this.end = end;
+            this.parentStart = parentStart;
+            this.parentEnd = parentEnd;
+            this.parentName = parentName;
+        }
+    }
+
+    /**
+     * Byte range of the root start tag and the slices in document order.
+     */
+    static final class Layout {
+        final long rootStart;
+        final long rootEnd;
+        final List<Slice> slices;
+
+        Layout(long rootStart, long rootEnd, List<Slice> slices) {
+            this.rootStart = rootStart;
+            this.rootEnd = rootEnd;
+            this.slices = slices;
+        }
+    }
+
+    private BoundaryScanner() {
+    }
+
+    static Layout scan(MappedFile file) {
+        long length = file.length();
+        List<Slice> slices = new ArrayList<Slice>();
+
+        long rootStart = -1;
+        long rootEnd = -1;
+        String parentName = null;
+        long parentStart = -1;
+        long parentEnd = -1;
+        long sliceStart = -1;
+
+        int depth = 0;
+        long pos = 0;
+        while ((pos = indexOf(file, "<", pos, length)) >= 0) {
+            if (pos + 1 >= length) {
+                return null;
+            }
+
+            byte next = file.get(pos + 1);
+            if (next == '?') {
+                pos = skipTo(file, "?>", pos + 2, length);
+            } else if (next == '!') {
+                if (startsWith(file, "<!--", pos, length)) {
+                    pos = skipTo(file, "-->", pos + 4, length);
+                } else if (startsWith(file, "<![CDATA[", pos, length)) {
+                    pos = skipTo(file, "]]>", pos + 9, length);
+                } else {
+                    // DOCTYPE, may declare entities used in the slices
+                    return null;
+                }
+            } else if (next == '/') {
+                pos = skipTo(file, ">", pos + 2, length);
+                depth--;
+                if (sliceStart >= 0 && depth == 2) {
+                    slices.add(new Slice(sliceStart, pos, parentStart, parentEnd, parentName));
+                    sliceStart = -1;
+                }
+            } else {
+                long tagStart = pos;
+                long nameStart = pos + 1;
+                long nameEnd = nameStart;
+                while (nameEnd < length && !isNameEnd(file.get(nameEnd))) {
+                    nameEnd++;
+                }
+
+                long end = nameEnd;
+                byte quote = 0;
+                for (; end < length; end++) {
+                    byte b = file.get(end);
+                    if (quote != 0) {
+                        if (b == quote) {
+                            quote = 0;
+                        }
+                    } else if (b == '"' || b == '\'') {
+                        quote = b;
+                    } else if (b == '>') {
+                        break;
+                    }
+                }
+                if (end >= length) {
+                    return null;
+                }
+                boolean empty = file.get(end - 1) == '/';
+                pos = end + 1;
+
+                if (sliceStart < 0) {
+                    if (depth == 0) {
+                        if (rootStart >= 0 || !nameEquals(file, nameStart, nameEnd, "FIDJI")) {
+                            return null;
+                        }
+                        rootStart = tagStart;
+                        rootEnd = pos;
+                    } else if (depth == 1) {
+                        if (hasPrefix(file, nameStart, nameEnd)) {
+                            return null;
+                        }
+                        parentName = name(file, nameStart, nameEnd);
+                        parentStart = tagStart;
+                        parentEnd = pos;
+                    } else if (depth == 2 && ("ASTl".equals(parentName) || "gHOl".equals(parentName))) {
+                        if (!nameEquals(file, nameStart, nameEnd, "ASTl".equals(parentName) ? "AST00" : "gHO00")) {
+                            // would stay in the skeleton
+                            return null;
+                        }
+                        if (empty) {
+                            slices.add(new Slice(tagStart, pos, parentStart, parentEnd, parentName));
+                        } else {
+                            sliceStart = tagStart;
+                        }
+                    } else if (depth == 2 && hasPrefix(file, nameStart, nameEnd)) {
+                        return null;
+                    }
+                }
+
+                if (!empty) {
+                    depth++;
+                }
+            }
+
+            if (pos < 0) {
+                return null;
+            }
+        }
+
+        if (rootStart < 0 || depth != 0 || sliceStart >= 0) {
+            return null;
+        }
+
+        return new Layout(rootStart, rootEnd, slices);
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '/' || b == '>';
+    }
+
+    private static boolean startsWith(MappedFile file, String prefix, long pos, long length) {
+        if (pos + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (file.get(pos + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long indexOf(MappedFile file, String token, long from, long length) {
+        byte first = (byte) token.charAt(0);
+        for (long pos = from; pos < length; pos++) {
+            if (file.get(pos) == first && startsWith(file, token, pos, length)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position behind the next <code>token</code> or -1
+     */
+    private static long skipTo(MappedFile file, String token, long from, long length) {
+        long pos = indexOf(file, token, from, length);
+        return pos < 0 ? -1 : pos + token.length();
+    }
+
+    private static boolean nameEquals(MappedFile file, long from, long to, String name) {
+        return to - from == name.length() && startsWith(file, name, from, to);
+    }
+
+    private static boolean hasPrefix(MappedFile file, long from, long to) {
+        for (long pos = from; pos < to; pos++) {
+            if (file.get(pos) == ':') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String name(MappedFile file, long from, long to) {
+        char[] chars = new char[(int) (to - from)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (file.get(from + i) & 0xff);
+        }
+        return new String(chars);
+    }
+}
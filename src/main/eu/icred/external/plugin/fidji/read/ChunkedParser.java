@@ -0,0 +1,241 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import eu.icred.external.plugin.fidji.metrics.FidjiMetrics;
+import eu.icred.external.plugin.fidji.metrics.LatencyHistogram;
+import eu.icred.external.plugin.fidji.read.BoundaryScanner.Layout;
+import eu.icred.external.plugin.fidji.read.BoundaryScanner.Slice;
+import eu.icred.model.node.Data;
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+
+/**
+ * Reads a memory-mapped FIDJI file on several threads.
+ *
+ * The <code>AST00</code> and <code>gHO00</code> elements found by the
+ * {@link BoundaryScanner} are parsed concurrently on a fork-join pool, each
+ * batch wrapped into the original root and list start tags so that paths and
+ * namespaces are the same as in the whole document. Everything else (the
+ * skeleton) is read by the caller with a normal {@link DocumentParser}. The
+ * results of the batches are then handed to that parser in document order,
+ * so the outcome is the same as reading the file sequentially.
+ */
+final class ChunkedParser {
+    static final int BATCH_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<XMLInputFactory> FACTORIES = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return XMLInputFactory.newInstance();
+        }
+    };
+
+    private final MappedFile file;
+    private final Layout layout;
+    private final int parallelism;
+    private final int batchSize;
+
+    private ChunkedParser(MappedFile file, Layout layout, int parallelism, int batchSize) {
+        this.file = file;
+        this.layout = layout;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Maps the rest of <code>in</code> and scans it.
+     *
+     * @param batchSize
+     *            minimum number of bytes parsed by one task, usually
+     *            {@link #BATCH_SIZE}
+     * @param segmentBits
+     *            see {@link MappedFile#MappedFile(FileChannel, long, int)}
+     * @return <code>null</code> if the stream can not be mapped or its layout
+     *         is not supported; the stream has not been read in this case
+     */
+    static ChunkedParser open(FileInputStream in, int parallelism, int batchSize, int segmentBits) {
+        try {
+            FileChannel channel = in.getChannel();
+            MappedFile file = new MappedFile(channel, channel.position(), segmentBits);
+            Layout layout = BoundaryScanner.scan(file);
+            return layout == null ? null : new ChunkedParser(file, layout, parallelism, batchSize);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of mapped bytes
+     */
+    long length() {
+        return file.length();
+    }
+
+    /**
+     * @return the file without the slices
+     */
+    InputStream openSkeleton() {
+        List<InputStream> parts = new ArrayList<InputStream>();
+        long pos = 0;
+        for (Slice slice : layout.slices) {
+            parts.add(file.openStream(pos, slice.start));
+            pos = slice.end;
+        }
+        parts.add(file.openStream(pos, file.length()));
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    /**
+     * Parses all slices and hands their properties and companies to
+     * <code>target</code> in document order.
+     *
+     * @param values
+     *            pool for the values of the slices, may be <code>null</code>
+     * @param metrics
+     *            receives the element counts and latencies of the slices,
+     *            may be <code>null</code>
+     */
+    void parseSlices(DocumentParser target, ValuePool values, FidjiMetrics metrics) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int window = 4 * parallelism;
+            Deque<Future<Recorder>> inFlight = new ArrayDeque<Future<Recorder>>();
+
+            List<Slice> slices = layout.slices;
+            int from = 0;
+            while (from < slices.size()) {
+                Slice first = slices.get(from);
+                int to = from + 1;
+                long size = first.end - first.start;
+                while (to < slices.size() && size < batchSize && slices.get(to).parentStart == first.parentStart) {
+                    size += slices.get(to).end - slices.get(to).start;
+                    to++;
+                }
+
+                if (inFlight.size() >= window) {
+                    inFlight.poll().get().replay(target);
+                }
+                inFlight.add(pool.submit(new Batch(slices.subList(from, to), values, metrics)));
+                from = to;
+            }
+
+            while (!inFlight.isEmpty()) {
+                inFlight.poll().get().replay(target);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses consecutive slices with the same parent list element.
+     */
+    private class Batch implements Callable<Recorder> {
+        private final List<Slice> slices;
+        private final ValuePool values;
+        private final FidjiMetrics metrics;
+
+        Batch(List<Slice> slices, ValuePool values, FidjiMetrics metrics) {
+            this.slices = slices;
+            this.values = values;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Recorder call() throws Exception {
+            Slice first = slices.get(0);
+            List<InputStream> parts = new ArrayList<InputStream>();
+            parts.add(file.openStream(layout.rootStart, layout.rootEnd));
+            parts.add(file.openStream(first.parentStart, first.parentEnd));
+            for (Slice slice : slices) {
+                parts.add(file.openStream(slice.start, slice.end));
+            }
+            parts.add(new ByteArrayInputStream(("</" + first.parentName + "></FIDJI>").getBytes("UTF-8")));
+
+            XMLStreamReader xmlStream = FACTORIES.get().createXMLStreamReader(new SequenceInputStream(Collections.enumeration(parts)), "UTF-8");
+            try {
+                Period period = new Period();
+                period.setData(new Data());
+
+                Recorder recorder = new Recorder();
+                LatencyHistogram latency = metrics != null && metrics.isHistogramEnabled() ? metrics.getEntityLatency() : null;
+                DocumentParser parser = new DocumentParser(xmlStream, period, recorder, null, null, values, latency);
+                parser.parse();
+                if (metrics != null) {
+                    metrics.elementsRead(parser.getCounts());
+                }
+                return recorder;
+            } finally {
+                xmlStream.close();
+            }
+        }
+    }
+
+    /**
+     * Keeps the entities of a batch in document order.
+     */
+    private static class Recorder implements IImportListener {
+        private final List<Object> entities = new ArrayList<Object>();
+        private final Map<Company, List<String>> links = new IdentityHashMap<Company, List<String>>();
+
+        @Override
+        public void periodStarted(Period period) {
+        }
+
+        @Override
+        public void propertyCompleted(Property property) {
+            entities.add(property);
+        }
+
+        @Override
+        public void companyPropertyLinked(Company company, String propertyId) {
+            List<String> ids = links.get(company);
+            if (ids == null) {
+                ids = new ArrayList<String>();
+                links.put(company, ids);
+            }
+            ids.add(propertyId);
+        }
+
+        @Override
+        public void companyCompleted(Company company) {
+            entities.add(company);
+        }
+
+        @Override
+        public void periodCompleted(Period period) {
+        }
+
+        void replay(DocumentParser target) {
+            for (Object entity : entities) {
+                if (entity instanceof Property) {
+                    target.propertyCompleted((Property) entity);
+                } else {
+                    Company company = (Company) entity;
+                    List<String> ids = links.get(company);
+                    target.addCompany(company, ids != null ? ids : Collections.<String> emptyList());
+                }
+            }
+        }
+    }
+}
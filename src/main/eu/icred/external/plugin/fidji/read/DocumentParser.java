@@ -0,0 +1,387 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.joda.time.LocalDate;
+
+import eu.icred.external.plugin.fidji.index.CompanyIndex;
+import eu.icred.external.plugin.fidji.index.UnitHash;
+import eu.icred.external.plugin.fidji.metrics.ElementCounts;
+import eu.icred.external.plugin.fidji.metrics.Entity;
+import eu.icred.external.plugin.fidji.metrics.LatencyHistogram;
+import eu.icred.model.datatype.Area;
+import eu.icred.model.datatype.enumeration.AreaMeasurement;
+import eu.icred.model.datatype.enumeration.AreaType;
+import eu.icred.model.datatype.enumeration.PeriodValueType;
+import eu.icred.model.node.Data;
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Building;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Lease;
+import eu.icred.model.node.entity.LeasedUnit;
+import eu.icred.model.node.entity.Property;
+import eu.icred.model.node.entity.Unit;
+import eu.icred.model.node.group.Address;
+
+/**
+ * Reads the elements of one FIDJI document (or of a part of it, see
+ * {@link ChunkedParser}) into a {@link Period}.
+ *
+ * Completed properties are either handed to the {@link IImportListener} or
+ * collected in <code>properties</code>; company links are either reported to
+ * the listener or recorded in the {@link CompanyIndex}. Linking properties
+ * to companies is left to the caller.
+ *
+ * With a {@link ValuePool} ids, labels, unit hashes, address fields, dates
+ * and numbers, including the values of areas (and, if the pool shares them,
+ * addresses), are replaced by their pooled instances.
+ *
+ * The parser always counts the entities it reads (see {@link #getCounts()});
+ * the time needed for each <code>AST00</code> is only measured if a
+ * {@link LatencyHistogram} is given.
+ */
+final class DocumentParser {
+    private final XMLStreamReader xmlStream;
+    private final ElementPath path = new ElementPath();
+
+    private final Period period;
+    private final Data data;
+    private final IImportListener listener;
+    private final List<Property> properties;
+    private final CompanyIndex companyIndex;
+    private final ValuePool values;
+    private final boolean sharedAddresses;
+
+    private final ElementCounts counts = new ElementCounts();
+    private final LatencyHistogram latency;
+    private long propertyStart = 0;
+
+    private Company currentCompany = null;
+    private Property currentProperty = null;
+    private Building currentBuilding = null;
+    private Address currentAddress = null;
+    private Unit currentUnit = null;
+    private Lease currentLease = null;
+
+    DocumentParser(XMLStreamReader xmlStream, Period period, IImportListener listener, List<Property> properties, CompanyIndex companyIndex,
+            ValuePool values, LatencyHistogram latency) {
+        this.xmlStream = xmlStream;
+        this.period = period;
+        this.data = period.getData();
+        this.listener = listener;
+        this.properties = properties;
+        this.companyIndex = companyIndex;
+        this.values = values;
+        this.sharedAddresses = values != null && values.isSharingAddresses();
+        this.latency = latency;
+    }
+
+    ElementCounts getCounts() {
+        return counts;
+    }
+
+    void parse() throws XMLStreamException {
+        while (xmlStream.hasNext()) {
+            xmlStream.next();
+            if (xmlStream.isStartElement()) {
+                switch (path.push(xmlStream.getLocalName())) {
+                case FIDJI: {
+                    String situation = getAttributeByName("situation");
+                    LocalDate toDate = ValueParser.parseDate(situation);
+                    LocalDate fromDate = toDate.withDayOfMonth(1);
+                    period.setTo(toDate);
+                    period.setFrom(fromDate);
+                    period.setPeriodType(org.joda.time.Period.months(1));
+                    period.setIdentifier(toDate.getYear() + "-" + toDate.getMonthOfYear());
+                    period.setValueType(PeriodValueType.OTHER);
+
+                    if (listener != null) {
+                        listener.periodStarted(period);
+                    }
+                    break;
+                }
+
+                // Property:
+                case AST00: {
+                    if (latency != null) {
+                        propertyStart = System.nanoTime();
+                    }
+                    counts.increment(Entity.AST00);
+                    String AST00_id = id(getAttributeByName("id"));
+                    String AST00_name = text(getAttributeByName("name"));
+
+                    currentAddress = new Address();
+
+                    currentProperty = new Property();
+                    currentProperty.setObjectIdSender(AST00_id);
+                    currentProperty.setLabel(AST00_name);
+                    currentProperty.setAddress(currentAddress);
+
+                    currentBuilding = new Building();
+                    currentBuilding.setObjectIdSender(AST00_id);
+                    currentBuilding.setLabel(AST00_name);
+                    currentBuilding.setAddress(currentAddress);
+                    Map<String, Building> buildings = new HashMap<String, Building>();
+                    buildings.put(AST00_id, currentBuilding);
+                    currentProperty.setBuildings(buildings);
+                    break;
+                }
+                case AST70: {
+                    String AST70 = id(xmlStream.getElementText());
+
+                    currentProperty.setObjectIdReceiver(AST70);
+                    currentBuilding.setObjectIdReceiver(AST70);
+                    break;
+                }
+                case GAD01:
+                    currentAddress.setStreet(text(xmlStream.getElementText()));
+                    break;
+
+                case GAD04:
+                    currentAddress.setZip(text(xmlStream.getElementText()));
+                    break;
+
+                case GAD05:
+                    currentAddress.setCity(text(xmlStream.getElementText()));
+                    break;
+
+                // Property-End
+
+                // Unit
+                case PRT00: {
+                    counts.increment(Entity.PRT00);
+                    String id = id(getAttributeByName("id"));
+
+                    currentUnit = new Unit();
+                    currentUnit.setObjectIdSender(id);
+                    currentUnit.setAreaMeasurement(AreaMeasurement.SQM);
+                    currentUnit.setHash(hash(UnitHash.of("building", currentBuilding.getObjectIdSender(), id)));
+
+                    Map<String, Unit> units = currentBuilding.getUnits();
+                    if (units == null) {
+                        units = new HashMap<String, Unit>();
+                        currentBuilding.setUnits(units);
+                    }
+                    units.put(id, currentUnit);
+                    break;
+                }
+                case PRT25:
+                    currentUnit.setObjectIdReceiver(id(xmlStream.getElementText()));
+                    break;
+
+                case PRT24:
+                    currentUnit.setNumberOfRooms(number(ValueParser.parseDouble(xmlStream.getElementText())));
+                    break;
+
+                case PRT18: {
+                    Address unitAddress = currentUnit.getAddress();
+                    if (unitAddress == null || sharedAddresses) {
+                        // pooled addresses are never modified
+                        unitAddress = new Address();
+                    }
+                    unitAddress.setFloor(text(xmlStream.getElementText()));
+                    currentUnit.setAddress(sharedAddresses ? values.address(unitAddress) : unitAddress);
+                    break;
+                }
+                case PRT21:
+                    currentUnit.setLettableUnits(ValueParser.parseInt(xmlStream.getElementText()));
+                    break;
+
+                case PRT05:
+                    currentUnit.setLettableArea(area(ValueParser.parseDouble(xmlStream.getElementText())));
+                    break;
+
+                // Unit-End
+
+                // Lease
+                case LEA00: {
+                    counts.increment(Entity.LEA00);
+                    String id = id(getAttributeByName("id"));
+
+                    currentLease = new Lease();
+                    currentLease.setObjectIdSender(id);
+
+                    Map<String, Lease> leases = currentProperty.getLeases();
+                    if (leases == null) {
+                        leases = new HashMap<String, Lease>();
+                        currentProperty.setLeases(leases);
+                    }
+                    leases.put(id, currentLease);
+                    break;
+                }
+                case LEA38:
+                    currentLease.setBeginRentPayment(date(xmlStream.getElementText()));
+                    break;
+
+                case LEA05:
+                    currentLease.setContractCompletionDate(date(xmlStream.getElementText()));
+                    break;
+
+                case LEA07:
+                    currentLease.setDmiendOption(date(xmlStream.getElementText()));
+                    break;
+
+                case ALP00: {
+                    counts.increment(Entity.ALP00);
+                    String leasedUnitId = getAttributeByName("idPRT");
+
+                    LeasedUnit lUnit = new LeasedUnit();
+                    String hash = hash(UnitHash.of("building", currentBuilding.getObjectIdSender(), leasedUnitId));
+                    lUnit.setHash(hash);
+
+                    Map<String, LeasedUnit> units = currentLease.getLeasedUnits();
+                    if (units == null) {
+                        units = new HashMap<String, LeasedUnit>();
+                        currentLease.setLeasedUnits(units);
+                    }
+                    units.put(hash, lUnit);
+                    break;
+                }
+                // Lease-End
+
+                // Company:
+                case GHO00: {
+                    counts.increment(Entity.GHO00);
+                    String gHOl_name = text(getAttributeByName("name"));
+                    String gHOl_id = id(getAttributeByName("id"));
+
+                    currentCompany = new Company();
+                    currentCompany.setObjectIdSender(gHOl_id);
+                    currentCompany.setLabel(gHOl_name);
+                    putCompany(currentCompany);
+                    break;
+                }
+                case GHO02: {
+                    String AST_id = id(getAttributeByName("idRef-AST"));
+                    Map<String, Property> properties = currentCompany.getProperties();
+                    if (properties == null) {
+                        properties = new HashMap<String, Property>();
+                        currentCompany.setProperties(properties);
+                    }
+                    properties.put(AST_id, null);
+
+                    companyLinked(currentCompany, AST_id);
+                    break;
+                }
+                // Company-End
+
+                default:
+                    break;
+                }
+            }
+
+            if (xmlStream.isEndElement()) {
+                switch (path.pop()) {
+                case AST00:
+                    if (sharedAddresses) {
+                        Address address = values.address(currentAddress);
+                        currentProperty.setAddress(address);
+                        currentBuilding.setAddress(address);
+                    }
+                    propertyCompleted(currentProperty);
+                    currentProperty = null;
+                    currentBuilding = null;
+                    currentAddress = null;
+                    currentUnit = null;
+                    currentLease = null;
+                    if (latency != null) {
+                        latency.record(System.nanoTime() - propertyStart);
+                    }
+                    break;
+
+                case GHO00:
+                    companyCompleted(currentCompany);
+                    currentCompany = null;
+                    break;
+
+                default:
+                    break;
+                }
+            }
+        }
+    }
+
+    void propertyCompleted(Property property) {
+        if (listener != null) {
+            listener.propertyCompleted(property);
+        } else {
+            properties.add(property);
+        }
+    }
+
+    void companyLinked(Company company, String propertyId) {
+        if (listener != null) {
+            listener.companyPropertyLinked(company, propertyId);
+        } else {
+            companyIndex.link(propertyId, company);
+        }
+    }
+
+    /**
+     * Adds <code>company</code> to the period; the links of a company with the
+     * same id that it replaces no longer count.
+     */
+    private void putCompany(Company company) {
+        Company replaced = data.getCompanies().put(company.getObjectIdSender(), company);
+        if (replaced != null && listener == null) {
+            companyIndex.remove(replaced);
+        }
+    }
+
+    void companyCompleted(Company company) {
+        if (listener != null) {
+            listener.companyCompleted(company);
+        }
+    }
+
+    /**
+     * Adds a company that has been read by another parser, as if its
+     * <code>gHO00</code> element had been read by this one.
+     */
+    void addCompany(Company company, List<String> propertyIds) {
+        putCompany(company);
+        for (String propertyId : propertyIds) {
+            companyLinked(company, propertyId);
+        }
+        companyCompleted(company);
+    }
+
+    private String id(String value) {
+        return values != null ? values.id(value) : value;
+    }
+
+    private String text(String value) {
+        return values != null ? values.text(value) : value;
+    }
+
+    private String hash(String value) {
+        return values != null ? values.hash(value) : value;
+    }
+
+    private LocalDate date(String text) {
+        return values != null ? values.date(text) : ValueParser.parseDate(text);
+    }
+
+    private Double number(double value) {
+        return values != null ? values.number(value) : value;
+    }
+
+    private Area area(double value) {
+        return new Area(number(value), AreaMeasurement.SQM, AreaType.NOT_SPECIFIED);
+    }
+
+    private String getAttributeByName(String name) {
+        for (int i = 0; i < xmlStream.getAttributeCount(); i++) {
+            if (xmlStream.getAttributeLocalName(i).equals(name)) {
+                return xmlStream.getAttributeValue(i);
+            }
+        }
+
+        return null;
+    }
+}
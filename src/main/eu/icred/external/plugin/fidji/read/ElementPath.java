@@ -0,0 +1,149 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tracks the position of a {@link javax.xml.stream.XMLStreamReader} inside a
+ * FIDJI document.
+ *
+ * The known element paths are compiled once into a state table, so entering
+ * or leaving an element is a table lookup on the local name and does not
+ * allocate. Elements outside of the known paths (and all of their children)
+ * map to {@link Node#NONE}.
+ */
+final class ElementPath {
+    /**
+     * Elements the {@link Reader} reacts on.
+     */
+    enum Node {
+        NONE,
+        FIDJI,
+        AST00, AST70, GAD01, GAD04, GAD05,
+        PRT00, PRT25, PRT24, PRT18, PRT21, PRT05,
+        LEA00, LEA38, LEA05, LEA07, ALP00,
+        GHO00, GHO02
+    }
+
+    private static final int UNKNOWN = -1;
+    private static final int ROOT = 0;
+
+    private static final String[][] CHILD_NAMES;
+    private static final int[][] CHILD_STATES;
+    private static final Node[] NODES;
+
+    static {
+        List<List<String>> names = new ArrayList<List<String>>();
+        List<List<Integer>> states = new ArrayList<List<Integer>>();
+        List<Node> nodes = new ArrayList<Node>();
+
+        // root state (before the document element)
+        names.add(new ArrayList<String>());
+        states.add(new ArrayList<Integer>());
+        nodes.add(Node.NONE);
+
+        register(names, states, nodes, "FIDJI", Node.FIDJI);
+
+        // Property
+        register(names, states, nodes, "FIDJI/ASTl/AST00", Node.AST00);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST70", Node.AST70);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST22gADl/gAD00/gAD01", Node.GAD01);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST22gADl/gAD00/gAD04", Node.GAD04);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST22gADl/gAD00/gAD05", Node.GAD05);
+
+        // Unit
+        for (String list : new String[] { "AST24PRTl", "AST23PRTl" }) {
+            String unit = "FIDJI/ASTl/AST00/" + list + "/PRT00";
+            register(names, states, nodes, unit, Node.PRT00);
+            register(names, states, nodes, unit + "/PRT25", Node.PRT25);
+            register(names, states, nodes, unit + "/PRT24", Node.PRT24);
+            register(names, states, nodes, unit + "/PRT18", Node.PRT18);
+            register(names, states, nodes, unit + "/PRT21", Node.PRT21);
+            register(names, states, nodes, unit + "/PRT05", Node.PRT05);
+        }
+
+        // Lease
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST25LEAl/LEA00", Node.LEA00);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST25LEAl/LEA00/LEA38", Node.LEA38);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST25LEAl/LEA00/LEA05", Node.LEA05);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST25LEAl/LEA00/LEA07", Node.LEA07);
+        register(names, states, nodes, "FIDJI/ASTl/AST00/AST25LEAl/LEA00/LEA22aLPl/aLP00", Node.ALP00);
+
+        // Company
+        register(names, states, nodes, "FIDJI/gHOl/gHO00", Node.GHO00);
+        register(names, states, nodes, "FIDJI/gHOl/gHO00/gHO02", Node.GHO02);
+
+        CHILD_NAMES = new String[names.size()][];
+        CHILD_STATES = new int[names.size()][];
+        for (int i = 0; i < names.size(); i++) {
+            CHILD_NAMES[i] = names.get(i).toArray(new String[0]);
+            CHILD_STATES[i] = new int[states.get(i).size()];
+            for (int j = 0; j < CHILD_STATES[i].length; j++) {
+                CHILD_STATES[i][j] = states.get(i).get(j);
+            }
+        }
+        NODES = nodes.toArray(new Node[nodes.size()]);
+    }
+
+    private static void register(List<List<String>> names, List<List<Integer>> states, List<Node> nodes, String path, Node node) {
+        int state = ROOT;
+        for (String name : path.split("/")) {
+            int index = names.get(state).indexOf(name);
+            if (index < 0) {
+                names.get(state).add(name);
+                states.get(state).add(nodes.size());
+                names.add(new ArrayList<String>());
+                states.add(new ArrayList<Integer>());
+                nodes.add(Node.NONE);
+                index = names.get(state).size() - 1;
+            }
+            state = states.get(state).get(index);
+        }
+        nodes.set(state, node);
+    }
+
+    private int[] stack = new int[16];
+    private int depth = 0;
+
+    ElementPath() {
+        stack[0] = ROOT;
+    }
+
+    /**
+     * Enters the child element <code>localName</code> of the current element.
+     *
+     * @return the node of the entered element
+     */
+    Node push(String localName) {
+        int state = stack[depth];
+        if (state != UNKNOWN) {
+            String[] names = CHILD_NAMES[state];
+            int next = UNKNOWN;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(localName)) {
+                    next = CHILD_STATES[state][i];
+                    break;
+                }
+            }
+            state = next;
+        }
+
+        if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = state;
+
+        return state == UNKNOWN ? Node.NONE : NODES[state];
+    }
+
+    /**
+     * Leaves the current element.
+     *
+     * @return the node of the element that was left
+     */
+    Node pop() {
+        int state = stack[depth--];
+        return state == UNKNOWN ? Node.NONE : NODES[state];
+    }
+}
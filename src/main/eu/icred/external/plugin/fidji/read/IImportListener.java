@@ -0,0 +1,48 @@
+package eu.icred.external.plugin.fidji.read;
+
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+
+/**
+ * Receives the entities of a FIDJI file while the {@link Reader} streams it.
+ *
+ * With a listener set, the {@link Reader} hands every property over as soon
+ * as its <code>AST00</code> element is closed and does not keep a reference
+ * to it, so the heap needed for an import no longer depends on the size of
+ * the portfolio. Companies stay in the {@link eu.icred.model.node.Container}
+ * of the reader, but their property maps only contain the referenced ids
+ * (mapped to <code>null</code>); the links are reported through
+ * {@link #companyPropertyLinked(Company, String)} instead.
+ */
+public interface IImportListener {
+
+    /**
+     * Called after the <code>FIDJI</code> root element has been read, i.e.
+     * the dates and the identifier of the period are known. The data of the
+     * period is still empty.
+     */
+    void periodStarted(Period period);
+
+    /**
+     * Called when an <code>AST00</code> element is closed. The property
+     * contains its building with all units and all leases.
+     */
+    void propertyCompleted(Property property);
+
+    /**
+     * Called for every <code>gHO02</code> element, i.e. the property with the
+     * sender id <code>propertyId</code> belongs to <code>company</code>.
+     */
+    void companyPropertyLinked(Company company, String propertyId);
+
+    /**
+     * Called when a <code>gHO00</code> element is closed.
+     */
+    void companyCompleted(Company company);
+
+    /**
+     * Called after the whole file has been read.
+     */
+    void periodCompleted(Period period);
+}
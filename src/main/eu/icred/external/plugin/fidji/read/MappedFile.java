@@ -0,0 +1,86 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a file from a given position to its end.
+ *
+ * A single {@link MappedByteBuffer} is limited to 2 GB, so the file is
+ * mapped in segments of 1 GB and addressed with <code>long</code> offsets.
+ * All methods may be used concurrently.
+ */
+final class MappedFile {
+    static final int SEGMENT_BITS = 30;
+
+    private final int segmentBits;
+    private final long segmentMask;
+    private final MappedByteBuffer[] segments;
+    private final long length;
+
+    /**
+     * @param segmentBits
+     *            log2 of the segment size, usually {@link #SEGMENT_BITS};
+     *            smaller segments are only useful for testing
+     */
+    MappedFile(FileChannel channel, long position, int segmentBits) throws IOException {
+        this.segmentBits = segmentBits;
+        long segmentSize = 1L << segmentBits;
+        segmentMask = segmentSize - 1;
+        length = Math.max(0, channel.size() - position);
+        segments = new MappedByteBuffer[(int) ((length + segmentSize - 1) >>> segmentBits)];
+        for (int i = 0; i < segments.length; i++) {
+            long offset = (long) i << segmentBits;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(segmentSize, length - offset));
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    byte get(long index) {
+        return segments[(int) (index >>> segmentBits)].get((int) (index & segmentMask));
+    }
+
+    /**
+     * @return a stream of the bytes from <code>from</code> (inclusive) to
+     *         <code>to</code> (exclusive)
+     */
+    InputStream openStream(final long from, final long to) {
+        return new InputStream() {
+            private long position = from;
+
+            @Override
+            public int read() {
+                return position < to ? get(position++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (position >= to) {
+                    return -1;
+                }
+
+                ByteBuffer segment = segments[(int) (position >>> segmentBits)].duplicate();
+                int start = (int) (position & segmentMask);
+                int count = (int) Math.min(Math.min(len, to - position), segment.limit() - start);
+                segment.position(start);
+                segment.get(b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, to - position);
+            }
+        };
+    }
+}
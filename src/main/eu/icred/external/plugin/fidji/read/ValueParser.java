@@ -0,0 +1,93 @@
+package eu.icred.external.plugin.fidji.read;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Parsers for FIDJI element texts.
+ *
+ * The common shapes (<code>yyyy-MM-dd</code> dates and short plain decimals)
+ * are parsed directly from the characters; everything else is handed to
+ * {@link LocalDate#parse(String)} and {@link Double#parseDouble(String)}, so
+ * the results are the same as with those methods.
+ */
+final class ValueParser {
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+            1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /** Largest number of significant digits that is still exact as a double. */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private ValueParser() {
+    }
+
+    static LocalDate parseDate(String text) {
+        if (text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return new LocalDate(year, month, day);
+            }
+        }
+        return LocalDate.parse(text);
+    }
+
+    static double parseDouble(String text) {
+        int length = text.length();
+        int pos = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean anyDigit = false;
+        for (; pos < length; pos++) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Double.parseDouble(text);
+            }
+            if (digits > MAX_EXACT_DIGITS || fractionDigits >= POWERS_OF_TEN.length) {
+                return Double.parseDouble(text);
+            }
+        }
+        if (!anyDigit) {
+            return Double.parseDouble(text);
+        }
+
+        // mantissa and 10^n are exact doubles, so a single division rounds correctly
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    static int parseInt(String text) {
+        return (int) parseDouble(text);
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
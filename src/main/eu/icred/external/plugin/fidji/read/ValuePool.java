@@ -0,0 +1,206 @@
+package eu.icred.external.plugin.fidji.read;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.joda.time.LocalDate;
+
+import eu.icred.model.datatype.Area;
+import eu.icred.model.node.group.Address;
+
+/**
+ * Canonical instances of the values that repeat within an import, or between
+ * the periods of a batch import (see {@link BatchReader}): ids, labels, unit
+ * hashes, address fields, dates and numbers (also the values of areas), and
+ * optionally whole addresses. May be used by several parsers at the same time.
+ *
+ * Each kind of value has its own fixed-size, direct-mapped cache: a value
+ * replaces whatever was cached in its slot, so the pool never grows and a
+ * flood of unique values (e.g. property ids) only costs hit rate, not
+ * memory. Equal values are therefore shared in most but not all cases.
+ *
+ * All of these values are immutable. {@link Address} is not: a shared address
+ * changed by the application changes every unit or property using it. Whole
+ * addresses are therefore only pooled if explicitly requested, and only once
+ * all of their fields have been read. {@link Area} may not be immutable
+ * either, so only the values of areas are pooled.
+ */
+final class ValuePool {
+    private final boolean sharingAddresses;
+
+    private final Cache<String, String> ids = new Cache<String, String>(1 << 16);
+    private final Cache<String, String> texts = new Cache<String, String>(1 << 14);
+    private final Cache<String, String> hashes = new Cache<String, String>(1 << 16);
+    private final Cache<AddressKey, Address> addresses = new Cache<AddressKey, Address>(1 << 14);
+    private final Cache<String, LocalDate> dates = new Cache<String, LocalDate>(1 << 14);
+    private final Cache<Double, Double> numbers = new Cache<Double, Double>(1 << 10);
+
+    /**
+     * @param sharingAddresses
+     *            <code>true</code> if {@link #address(Address)} returns
+     *            shared instances
+     */
+    ValuePool(boolean sharingAddresses) {
+        this.sharingAddresses = sharingAddresses;
+    }
+
+    boolean isSharingAddresses() {
+        return sharingAddresses;
+    }
+
+    /**
+     * @return the pooled id (sender or receiver id of an entity) equal to
+     *         <code>value</code>
+     */
+    String id(String value) {
+        return canonical(ids, value);
+    }
+
+    /**
+     * @return the pooled label or address field equal to <code>value</code>
+     */
+    String text(String value) {
+        return canonical(texts, value);
+    }
+
+    /**
+     * @return the pooled unit hash equal to <code>value</code>
+     */
+    String hash(String value) {
+        return canonical(hashes, value);
+    }
+
+    /**
+     * @return the pooled address with the same fields as <code>address</code>,
+     *         or <code>address</code> itself if addresses are not shared
+     */
+    Address address(Address address) {
+        if (address == null || !sharingAddresses) {
+            return address;
+        }
+        AddressKey key = new AddressKey(address);
+        Address pooled = addresses.get(key);
+        if (pooled != null) {
+            return pooled;
+        }
+        addresses.put(key, address);
+        return address;
+    }
+
+    /**
+     * @return the date <code>text</code> (see
+     *         {@link ValueParser#parseDate(String)})
+     */
+    LocalDate date(String text) {
+        LocalDate date = dates.get(text);
+        if (date == null) {
+            date = ValueParser.parseDate(text);
+            dates.put(text, date);
+        }
+        return date;
+    }
+
+    /**
+     * @return the pooled {@link Double} of <code>value</code>
+     */
+    Double number(double value) {
+        Double key = value;
+        Double number = numbers.get(key);
+        if (number == null) {
+            numbers.put(key, key);
+            return key;
+        }
+        return number;
+    }
+
+    private static String canonical(Cache<String, String> cache, String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = cache.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        cache.put(value, value);
+        return value;
+    }
+
+    /**
+     * Direct-mapped cache; entries are published safely through an
+     * {@link AtomicReferenceArray}.
+     */
+    private static final class Cache<K, V> {
+        private final AtomicReferenceArray<Entry<K, V>> entries;
+        private final int mask;
+
+        Cache(int size) {
+            entries = new AtomicReferenceArray<Entry<K, V>>(size);
+            mask = size - 1;
+        }
+
+        V get(K key) {
+            Entry<K, V> entry = entries.get(index(key));
+            return entry != null && entry.key.equals(key) ? entry.value : null;
+        }
+
+        void put(K key, V value) {
+            entries.set(index(key), new Entry<K, V>(key, value));
+        }
+
+        private int index(K key) {
+            int h = key.hashCode();
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        final V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The fields of an address set by the {@link DocumentParser}.
+     */
+    private static final class AddressKey {
+        private final String street;
+        private final String zip;
+        private final String city;
+        private final String floor;
+        private final int hash;
+
+        AddressKey(Address address) {
+            street = address.getStreet();
+            zip = address.getZip();
+            city = address.getCity();
+            floor = address.getFloor();
+            hash = 31 * (31 * (31 * hashCode(street) + hashCode(zip)) + hashCode(city)) + hashCode(floor);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AddressKey)) {
+                return false;
+            }
+            AddressKey other = (AddressKey) obj;
+            return hash == other.hash && equals(street, other.street) && equals(zip, other.zip) && equals(city, other.city)
+                    && equals(floor, other.floor);
+        }
+
+        private static int hashCode(String value) {
+            return value != null ? value.hashCode() : 0;
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
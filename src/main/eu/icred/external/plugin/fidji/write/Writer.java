@@ -1,20 +1,35 @@
 package eu.icred.external.plugin.fidji.write;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.log4j.Logger;
 import org.joda.time.LocalDate;
 
-import eu.icred.external.plugin.fidji.read.Reader;
+import eu.icred.external.plugin.fidji.index.UnitIdIndex;
+import eu.icred.external.plugin.fidji.metrics.CountingOutputStream;
+import eu.icred.external.plugin.fidji.metrics.ElementCounts;
+import eu.icred.external.plugin.fidji.metrics.Entity;
+import eu.icred.external.plugin.fidji.metrics.FidjiMetrics;
+import eu.icred.external.plugin.fidji.metrics.LatencyHistogram;
+import eu.icred.external.plugin.fidji.metrics.Phase;
 import eu.icred.model.datatype.enumeration.Subset;
 import eu.icred.model.node.AbstractNode;
 import eu.icred.model.node.Container;
@@ -33,13 +48,42 @@ import eu.icred.plugin.worker.output.ExportWorkerConfiguration;
 import eu.icred.plugin.worker.output.IExportWorker;
 
 public class Writer implements IExportWorker {
-    private static Logger logger = Logger.getLogger(Reader.class);
+    private static Logger logger = Logger.getLogger(Writer.class);
 
     public static final Subset[] SUPPORTED_SUBSETS = { Subset.S5_1 };
     private static String PARAMETER_NAME = "fidji-file";
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FRAGMENT_SIZE = 8 * 1024;
+
+    /** Deepest element level written by this class. */
+    private static final int MAX_DEEP = 6;
+    private static final char[] INDENTATION = new char[2 + 2 * MAX_DEEP];
+    static {
+        Arrays.fill(INDENTATION, ' ');
+        INDENTATION[0] = '\r';
+        INDENTATION[1] = '\n';
+    }
+
+    /** Factories are not guaranteed to be thread-safe, so every thread has its own. */
+    private static final ThreadLocal<XMLOutputFactory> FACTORIES = new ThreadLocal<XMLOutputFactory>() {
+        @Override
+        protected XMLOutputFactory initialValue() {
+            return XMLOutputFactory.newInstance();
+        }
+    };
+
     private XMLStreamWriter xmlStream = null;
 
+    private boolean prettyPrint = true;
+    private int parallelism = 1;
+    private int maxInFlight = 0;
+    private FidjiMetrics metrics = null;
+
+    /** Metrics of the current run, <code>null</code> if they are disabled. */
+    private FidjiMetrics active = null;
+    private LatencyHistogram latency = null;
+
     @Override
     public List<Subset> getSupportedSubsets() {
         return Arrays.asList(SUPPORTED_SUBSETS);
@@ -69,20 +113,98 @@ public class Writer implements IExportWorker {
         };
     }
 
+    public boolean isPrettyPrint() {
+        return prettyPrint;
+    }
+
+    /**
+     * <code>false</code> writes the document without any line breaks and
+     * indentation (compact mode), <code>true</code> (the default) indents
+     * every element by two spaces per level.
+     */
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Number of threads rendering the <code>AST00</code> elements and the
+     * <code>gHOl</code> element. With more than one thread every element is
+     * rendered into a separate byte fragment and the fragments are written in
+     * the same order as in sequential mode, so the output is identical. The
+     * default is 1 (sequential).
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Maximum number of rendered or pending fragments held in memory in
+     * parallel mode. Values below 1 mean four times the parallelism (the
+     * default).
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public FidjiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Metrics to report to while they are enabled, <code>null</code> (the
+     * default) for none.
+     */
+    public void setMetrics(FidjiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public void load(ExportWorkerConfiguration config, Container container) {
-        XMLOutputFactory factory = XMLOutputFactory.newInstance();
+        active = metrics != null && metrics.isEnabled() ? metrics : null;
+        latency = active != null && active.isHistogramEnabled() ? active.getEntityLatency() : null;
+        ExecutorService pool = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
 
         int deep = 0;
         try {
-            xmlStream = factory.createXMLStreamWriter(config.getStreams().get(PARAMETER_NAME), "UTF-8");
+            long start = System.nanoTime();
+            if (active != null) {
+                active.exportStarted();
+            }
+
+            OutputStream target = config.getStreams().get(PARAMETER_NAME);
+            CountingOutputStream counting = null;
+            if (active != null) {
+                target = counting = new CountingOutputStream(target);
+            }
+            OutputStream out = new BufferedOutputStream(target, BUFFER_SIZE);
+            xmlStream = FACTORIES.get().createXMLStreamWriter(out, "UTF-8");
 
             Period period = container.getPeriods().values().iterator().next();
             Data data = period.getData();
-            Collection<Company> companies = data.getCompanies().values();
+            final Collection<Company> companies = data.getCompanies().values();
+            final UnitIdIndex unitIds = new UnitIdIndex(companies);
+            ElementCounts counts = new ElementCounts();
+
+            Future<byte[]> companySection = null;
+            if (pool != null) {
+                companySection = pool.submit(new Fragment(active) {
+                    @Override
+                    void write(XMLStreamWriter stream, ElementCounts counts) throws XMLStreamException {
+                        writeCompanies(stream, counts, companies, 0);
+                    }
+                });
+            }
 
             xmlStream.writeStartDocument("utf-8", "1.0");
-            xmlStream.writeCharacters("\r\n");
+            newLine(xmlStream, 0);
             xmlStream.writeStartElement("FIDJI");
             xmlStream.writeAttribute("version", "2.0");
             xmlStream.writeAttribute("date", LocalDate.now().toString());
@@ -93,272 +215,369 @@ public class Writer implements IExportWorker {
                     "http://www.format-Fidji.org/XMLSchema-2.0 http://www.format-Fidji.org/XMLSchema-2.0/Fidji-Full-2-0.xsd");
 
             deep++;
-            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
+            newLine(xmlStream, deep);
             xmlStream.writeStartElement("ASTl");
-            for (Company company : companies) {
-                Map<String, Property> props = company.getProperties();
-                if (props != null) {
-                    for (Property prop : props.values()) {
-                        for (Building build : prop.getBuildings().values()) {
-                            deep++;
-                            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                            xmlStream.writeStartElement("AST00");
-                            xmlStream.writeAttribute("id", build.getObjectIdSender());
-                            if (build.getLabel() != null)
-                                xmlStream.writeAttribute("name", build.getLabel());
-
-                            if (build.getObjectIdReceiver() != null) {
-
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("AST70");
-                                xmlStream.writeCharacters(build.getObjectIdReceiver());
-                                deep--;
-                                xmlStream.writeEndElement(); // AST70
+            if (pool != null) {
+                // closes the start tag, the fragments are appended as raw bytes
+                xmlStream.writeCharacters("");
+                xmlStream.flush();
+
+                int window = maxInFlight > 0 ? maxInFlight : 4 * parallelism;
+                Deque<Future<byte[]>> inFlight = new ArrayDeque<Future<byte[]>>();
+                for (Company company : companies) {
+                    Map<String, Property> props = company.getProperties();
+                    if (props != null) {
+                        for (final Property prop : props.values()) {
+                            for (final Building build : prop.getBuildings().values()) {
+                                if (inFlight.size() >= window) {
+                                    out.write(inFlight.poll().get());
+                                }
+                                inFlight.add(pool.submit(new Fragment(active) {
+                                    @Override
+                                    void write(XMLStreamWriter stream, ElementCounts counts) throws XMLStreamException {
+                                        writeBuilding(stream, counts, unitIds, prop, build, 1);
+                                    }
+                                }));
                             }
-
-                            Address addr = build.getAddress();
-                            if (addr != null) {
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("AST22gADl");
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("gAD00");
-
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("gAD01");
-                                xmlStream.writeCharacters(addr.getStreet());
-                                deep--;
-                                xmlStream.writeEndElement(); // gAD01
-
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("gAD04");
-                                xmlStream.writeCharacters(addr.getZip());
-                                deep--;
-                                xmlStream.writeEndElement(); // gAD04
-
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("gAD05");
-                                xmlStream.writeCharacters(addr.getCity());
-                                deep--;
-                                xmlStream.writeEndElement(); // gAD05
-
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                deep--;
-                                xmlStream.writeEndElement(); // gAD00
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                deep--;
-                                xmlStream.writeEndElement(); // AST22gADl
+                        }
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    out.write(inFlight.poll().get());
+                }
+            } else {
+                for (Company company : companies) {
+                    Map<String, Property> props = company.getProperties();
+                    if (props != null) {
+                        for (Property prop : props.values()) {
+                            for (Building build : prop.getBuildings().values()) {
+                                writeBuilding(xmlStream, counts, unitIds, prop, build, deep);
                             }
+                        }
+                    }
+                }
+            }
+            newLine(xmlStream, deep);
+            deep--;
+            xmlStream.writeEndElement(); // ASTl
 
-                            Map<String, Unit> units = build.getUnits();
-                            if (units != null) {
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("AST24PRTl");
-                                for (Unit unit : units.values()) {
-                                    deep++;
-                                    xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                    xmlStream.writeStartElement("PRT00");
-                                    xmlStream.writeAttribute("id", unit.getObjectIdSender());
-
-                                    if (unit.getObjectIdReceiver() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("PRT25");
-                                        xmlStream.writeCharacters(unit.getObjectIdReceiver());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    if (unit.getNumberOfRooms() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("PRT24");
-                                        xmlStream.writeCharacters(unit.getNumberOfRooms().toString());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    Address unitAddr = unit.getAddress();
-                                    if (unitAddr != null && unitAddr.getFloor() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("PRT18");
-                                        xmlStream.writeCharacters(unitAddr.getFloor());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    if (unit.getLettableUnits() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("PRT21");
-                                        xmlStream.writeCharacters(unit.getLettableUnits().toString());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    if (unit.getLettableArea() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("PRT05");
-                                        xmlStream.writeCharacters(unit.getLettableArea().getValue().toString());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
+            if (companySection != null) {
+                xmlStream.flush();
+                out.write(companySection.get());
+            } else {
+                writeCompanies(xmlStream, counts, companies, deep);
+            }
 
-                                    xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                    deep--;
-                                    xmlStream.writeEndElement(); // PRT00
-                                }
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                deep--;
-                                xmlStream.writeEndElement(); // AST24PRTl
-                            }
+            newLine(xmlStream, 0);
+            xmlStream.writeEndElement();
+            xmlStream.writeEndDocument();
+            xmlStream.flush();
+            out.flush();
 
-                            Map<String, Lease> leases = prop.getLeases();
-                            if (leases != null) {
-                                deep++;
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                xmlStream.writeStartElement("AST25LEAl");
-
-                                for (Lease lease : leases.values()) {
-                                    deep++;
-                                    xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                    xmlStream.writeStartElement("LEA00");
-                                    xmlStream.writeAttribute("id", lease.getObjectIdSender());
-
-                                    if (lease.getBeginRentPayment() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("LEA38");
-                                        xmlStream.writeCharacters(lease.getBeginRentPayment().toString());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    if (lease.getContractCompletionDate() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("LEA05");
-                                        xmlStream.writeCharacters(lease.getContractCompletionDate().toString());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    if (lease.getDmiendOption() != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("LEA07");
-                                        xmlStream.writeCharacters(lease.getDmiendOption().toString());
-                                        deep--;
-                                        xmlStream.writeEndElement();
-                                    }
-                                    Map<String, LeasedUnit> leasedUnits = lease.getLeasedUnits();
-                                    if (leasedUnits != null) {
-                                        deep++;
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        xmlStream.writeStartElement("LEA22aLPl");
-
-                                        for (AbstractNode lUnit : leasedUnits.values()) {
-                                            String id = "";
-                                            if(lUnit instanceof Unit) {
-                                                id = getUnitIdByHash(prop, ((Unit)lUnit).getHash());
-                                            }if(lUnit instanceof LeasedUnit) {
-                                                id = getUnitIdByHash(prop, ((LeasedUnit)lUnit).getHash());
-                                            }
-                                            if(id == null) {
-                                                id = "";
-                                            }
-                                            
-                                            deep++;
-                                            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                            xmlStream.writeStartElement("aLP00");
-                                            xmlStream.writeAttribute("idPRT", id);
-                                            deep--;
-                                            xmlStream.writeEndElement();
-                                        }
-
-                                        xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                        deep--;
-                                        xmlStream.writeEndElement(); // LEA22aLPl
-                                    }
+            if (active != null) {
+                active.elementsWritten(counts);
+                active.phaseCompleted(Phase.SERIALIZE, System.nanoTime() - start, counting.getCount());
+            }
+        } catch (Exception e) {
+            logger.error("could not write FIDJI file", e);
+            if (active != null) {
+                active.failed();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
 
-                                    xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                    deep--;
-                                    xmlStream.writeEndElement(); // LEA00
-                                }
+    /**
+     * Writes <code>build</code> of <code>prop</code> as <code>AST00</code>
+     * element (including the line break in front of it) below an element of
+     * level <code>deep</code>.
+     */
+    private void writeBuilding(XMLStreamWriter stream, ElementCounts counts, UnitIdIndex unitIds, Property prop, Building build, int deep)
+            throws XMLStreamException {
+        long start = latency != null ? System.nanoTime() : 0;
+        counts.increment(Entity.AST00);
+        deep++;
+        newLine(stream, deep);
+        stream.writeStartElement("AST00");
+        stream.writeAttribute("id", build.getObjectIdSender());
+        if (build.getLabel() != null)
+            stream.writeAttribute("name", build.getLabel());
+
+        if (build.getObjectIdReceiver() != null) {
 
-                                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                                deep--;
-                                xmlStream.writeEndElement(); // AST25LEAl
-                            }
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("AST70");
+            stream.writeCharacters(build.getObjectIdReceiver());
+            deep--;
+            stream.writeEndElement(); // AST70
+        }
 
-                            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                            deep--;
-                            xmlStream.writeEndElement(); // AST00
-                        }
-                    }
+        Address addr = build.getAddress();
+        if (addr != null) {
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("AST22gADl");
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("gAD00");
+
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("gAD01");
+            stream.writeCharacters(addr.getStreet());
+            deep--;
+            stream.writeEndElement(); // gAD01
+
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("gAD04");
+            stream.writeCharacters(addr.getZip());
+            deep--;
+            stream.writeEndElement(); // gAD04
+
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("gAD05");
+            stream.writeCharacters(addr.getCity());
+            deep--;
+            stream.writeEndElement(); // gAD05
+
+            newLine(stream, deep);
+            deep--;
+            stream.writeEndElement(); // gAD00
+            newLine(stream, deep);
+            deep--;
+            stream.writeEndElement(); // AST22gADl
+        }
+
+        Map<String, Unit> units = build.getUnits();
+        if (units != null) {
+            deep++;
+            newLine(stream, deep);
+            stream.writeStartElement("AST24PRTl");
+            for (Unit unit : units.values()) {
+                deep++;
+                newLine(stream, deep);
+                counts.increment(Entity.PRT00);
+                stream.writeStartElement("PRT00");
+                stream.writeAttribute("id", unit.getObjectIdSender());
+
+                if (unit.getObjectIdReceiver() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("PRT25");
+                    stream.writeCharacters(unit.getObjectIdReceiver());
+                    deep--;
+                    stream.writeEndElement();
                 }
+                if (unit.getNumberOfRooms() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("PRT24");
+                    stream.writeCharacters(unit.getNumberOfRooms().toString());
+                    deep--;
+                    stream.writeEndElement();
+                }
+                Address unitAddr = unit.getAddress();
+                if (unitAddr != null && unitAddr.getFloor() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("PRT18");
+                    stream.writeCharacters(unitAddr.getFloor());
+                    deep--;
+                    stream.writeEndElement();
+                }
+                if (unit.getLettableUnits() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("PRT21");
+                    stream.writeCharacters(unit.getLettableUnits().toString());
+                    deep--;
+                    stream.writeEndElement();
+                }
+                if (unit.getLettableArea() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("PRT05");
+                    stream.writeCharacters(unit.getLettableArea().getValue().toString());
+                    deep--;
+                    stream.writeEndElement();
+                }
+
+                newLine(stream, deep);
+                deep--;
+                stream.writeEndElement(); // PRT00
             }
-            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
+            newLine(stream, deep);
             deep--;
-            xmlStream.writeEndElement(); // ASTl
+            stream.writeEndElement(); // AST24PRTl
+        }
 
+        Map<String, Lease> leases = prop.getLeases();
+        if (leases != null) {
             deep++;
-            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-            xmlStream.writeStartElement("gHOl");
-            for (Company com : companies) {
-                deep++;
-                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                xmlStream.writeStartElement("gHO00");
-                xmlStream.writeAttribute("id", com.getObjectIdSender());
-                if (com.getLabel() != null)
-                    xmlStream.writeAttribute("name", com.getLabel());
+            newLine(stream, deep);
+            stream.writeStartElement("AST25LEAl");
 
-                Map<String, Property> props = com.getProperties();
-                if (props != null) {
-                    Property firstProp = props.values().iterator().next();
+            for (Lease lease : leases.values()) {
+                deep++;
+                newLine(stream, deep);
+                counts.increment(Entity.LEA00);
+                stream.writeStartElement("LEA00");
+                stream.writeAttribute("id", lease.getObjectIdSender());
 
+                if (lease.getBeginRentPayment() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("LEA38");
+                    stream.writeCharacters(lease.getBeginRentPayment().toString());
+                    deep--;
+                    stream.writeEndElement();
+                }
+                if (lease.getContractCompletionDate() != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("LEA05");
+                    stream.writeCharacters(lease.getContractCompletionDate().toString());
+                    deep--;
+                    stream.writeEndElement();
+                }
+                if (lease.getDmiendOption() != null) {
                     deep++;
-                    xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
-                    xmlStream.writeStartElement("gHO02");
-                    xmlStream.writeAttribute("idRef-AST", firstProp.getObjectIdSender());
+                    newLine(stream, deep);
+                    stream.writeStartElement("LEA07");
+                    stream.writeCharacters(lease.getDmiendOption().toString());
+                    deep--;
+                    stream.writeEndElement();
+                }
+                Map<String, LeasedUnit> leasedUnits = lease.getLeasedUnits();
+                if (leasedUnits != null) {
+                    deep++;
+                    newLine(stream, deep);
+                    stream.writeStartElement("LEA22aLPl");
+
+                    for (AbstractNode lUnit : leasedUnits.values()) {
+                        String id = "";
+                        if(lUnit instanceof Unit) {
+                            id = unitIds.getUnitId(prop, ((Unit)lUnit).getHash());
+                        }if(lUnit instanceof LeasedUnit) {
+                            id = unitIds.getUnitId(prop, ((LeasedUnit)lUnit).getHash());
+                        }
+                        if(id == null) {
+                            id = "";
+                        }
+
+                        deep++;
+                        newLine(stream, deep);
+                        counts.increment(Entity.ALP00);
+                        stream.writeStartElement("aLP00");
+                        stream.writeAttribute("idPRT", id);
+                        deep--;
+                        stream.writeEndElement();
+                    }
+
+                    newLine(stream, deep);
                     deep--;
-                    xmlStream.writeEndElement(); // gHO02
+                    stream.writeEndElement(); // LEA22aLPl
                 }
-                xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
+
+                newLine(stream, deep);
                 deep--;
-                xmlStream.writeEndElement(); // gHO00
+                stream.writeEndElement(); // LEA00
             }
-            xmlStream.writeCharacters("\r\n" + new String(new char[deep]).replace("\0", "  "));
+
+            newLine(stream, deep);
             deep--;
-            xmlStream.writeEndElement(); // gHOl
+            stream.writeEndElement(); // AST25LEAl
+        }
 
-            xmlStream.writeCharacters("\r\n");
-            xmlStream.writeEndElement();
-            xmlStream.writeEndDocument();
-        } catch (Exception e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        newLine(stream, deep);
+        deep--;
+        stream.writeEndElement(); // AST00
+
+        if (latency != null) {
+            latency.record(System.nanoTime() - start);
         }
     }
 
-    private String getUnitIdByHash(Property prop, String hash) {
-        Map<String, Building> builds = prop.getBuildings();
-        if (builds != null) {
-            for (Building build : builds.values()) {
-                Map<String, Unit> units = build.getUnits();
-                if(units != null) {
-                    for (Unit unit : units.values()) {
-                        if(unit.getHash().equals(hash)) {
-                            return unit.getObjectIdSender();
-                        }
-                    }
-                }
+    /**
+     * Writes the <code>gHOl</code> element (including the line break in
+     * front of it) below an element of level <code>deep</code>.
+     */
+    private void writeCompanies(XMLStreamWriter stream, ElementCounts counts, Collection<Company> companies, int deep) throws XMLStreamException {
+        deep++;
+        newLine(stream, deep);
+        stream.writeStartElement("gHOl");
+        for (Company com : companies) {
+            deep++;
+            newLine(stream, deep);
+            counts.increment(Entity.GHO00);
+            stream.writeStartElement("gHO00");
+            stream.writeAttribute("id", com.getObjectIdSender());
+            if (com.getLabel() != null)
+                stream.writeAttribute("name", com.getLabel());
+
+            Map<String, Property> props = com.getProperties();
+            if (props != null) {
+                Property firstProp = props.values().iterator().next();
+
+                deep++;
+                newLine(stream, deep);
+                stream.writeStartElement("gHO02");
+                stream.writeAttribute("idRef-AST", firstProp.getObjectIdSender());
+                deep--;
+                stream.writeEndElement(); // gHO02
             }
+            newLine(stream, deep);
+            deep--;
+            stream.writeEndElement(); // gHO00
         }
-        
-        return null;
+        newLine(stream, deep);
+        deep--;
+        stream.writeEndElement(); // gHOl
+    }
+
+    /**
+     * Starts a new line indented for level <code>deep</code> (nothing in
+     * compact mode).
+     */
+    private void newLine(XMLStreamWriter stream, int deep) throws XMLStreamException {
+        if (prettyPrint) {
+            stream.writeCharacters(INDENTATION, 0, 2 + 2 * deep);
+        }
+    }
+
+    /**
+     * Renders a part of the document into a byte array with its own
+     * {@link XMLStreamWriter}. The elements are counted per fragment and
+     * added to <code>metrics</code> (if not <code>null</code>).
+     */
+    private abstract static class Fragment implements Callable<byte[]> {
+        private final FidjiMetrics metrics;
+
+        Fragment(FidjiMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(FRAGMENT_SIZE);
+            XMLStreamWriter stream = FACTORIES.get().createXMLStreamWriter(bytes, "UTF-8");
+            ElementCounts counts = new ElementCounts();
+            write(stream, counts);
+            stream.flush();
+            stream.close();
+            if (metrics != null) {
+                metrics.elementsWritten(counts);
+            }
+            return bytes.toByteArray();
+        }
+
+        abstract void write(XMLStreamWriter stream, ElementCounts counts) throws XMLStreamException;
     }
 
     @Override
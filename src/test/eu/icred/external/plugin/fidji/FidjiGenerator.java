@@ -0,0 +1,208 @@
+package eu.icred.external.plugin.fidji;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes synthetic FIDJI 2.0 files using exactly the elements the
+ * {@link eu.icred.external.plugin.fidji.read.Reader} understands.
+ *
+ * The output only depends on the sizes and the seed. Every property has one
+ * building with <code>unitsPerBuilding</code> units and
+ * <code>leasesPerProperty</code> leases on one to three of these units; the
+ * properties are distributed round-robin over <code>companies</code>
+ * companies.
+ *
+ * Usage: <code>FidjiGenerator &lt;file&gt; &lt;properties&gt;
+ * &lt;unitsPerBuilding&gt; &lt;leasesPerProperty&gt; &lt;companies&gt;
+ * [seed]</code>
+ */
+public class FidjiGenerator {
+    private static final String[] CITIES = { "Paris", "Lyon", "Marseille", "Toulouse", "Nice", "Nantes", "Strasbourg", "Bordeaux",
+            "Lille", "Rennes" };
+    private static final String[] STREETS = { "Rue de la Paix", "Avenue Victor Hugo", "Boulevard Haussmann", "Rue du Faubourg",
+            "Place de la Republique", "Quai de la Loire", "Rue Nationale" };
+
+    private final int properties;
+    private final int unitsPerBuilding;
+    private final int leasesPerProperty;
+    private final int companies;
+    private final long seed;
+
+    public FidjiGenerator(int properties, int unitsPerBuilding, int leasesPerProperty, int companies, long seed) {
+        this.properties = properties;
+        this.unitsPerBuilding = unitsPerBuilding;
+        this.leasesPerProperty = leasesPerProperty;
+        this.companies = companies;
+        this.seed = seed;
+    }
+
+    public byte[] toByteArray() throws XMLStreamException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out);
+        return out.toByteArray();
+    }
+
+    public void write(OutputStream out) throws XMLStreamException, IOException {
+        Random random = new Random(seed);
+        XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+        xml.writeStartDocument("utf-8", "1.0");
+        xml.writeCharacters("\r\n");
+        xml.writeStartElement("FIDJI");
+        xml.writeAttribute("version", "2.0");
+        xml.writeAttribute("date", "2015-02-01");
+        xml.writeAttribute("situation", "2015-01-31");
+        xml.writeAttribute("xmlns", "http://www.format-Fidji.org/XMLSchema-2.0");
+
+        newLine(xml, 1);
+        xml.writeStartElement("ASTl");
+        for (int p = 0; p < properties; p++) {
+            writeProperty(xml, random, p);
+        }
+        newLine(xml, 1);
+        xml.writeEndElement(); // ASTl
+
+        newLine(xml, 1);
+        xml.writeStartElement("gHOl");
+        for (int c = 0; c < companies; c++) {
+            newLine(xml, 2);
+            xml.writeStartElement("gHO00");
+            xml.writeAttribute("id", "C" + c);
+            xml.writeAttribute("name", "Company " + c);
+            for (int p = c; p < properties; p += companies) {
+                newLine(xml, 3);
+                xml.writeEmptyElement("gHO02");
+                xml.writeAttribute("idRef-AST", "P" + p);
+            }
+            newLine(xml, 2);
+            xml.writeEndElement(); // gHO00
+        }
+        newLine(xml, 1);
+        xml.writeEndElement(); // gHOl
+
+        newLine(xml, 0);
+        xml.writeEndElement(); // FIDJI
+        xml.writeEndDocument();
+        xml.flush();
+    }
+
+    private void writeProperty(XMLStreamWriter xml, Random random, int p) throws XMLStreamException {
+        newLine(xml, 2);
+        xml.writeStartElement("AST00");
+        xml.writeAttribute("id", "P" + p);
+        xml.writeAttribute("name", "Property " + p);
+
+        if (p % 3 != 0) {
+            element(xml, 3, "AST70", "R-" + p);
+        }
+
+        newLine(xml, 3);
+        xml.writeStartElement("AST22gADl");
+        newLine(xml, 4);
+        xml.writeStartElement("gAD00");
+        element(xml, 5, "gAD01", (1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)]);
+        element(xml, 5, "gAD04", String.valueOf(10000 + random.nextInt(89999)));
+        element(xml, 5, "gAD05", CITIES[random.nextInt(CITIES.length)]);
+        newLine(xml, 4);
+        xml.writeEndElement(); // gAD00
+        newLine(xml, 3);
+        xml.writeEndElement(); // AST22gADl
+
+        newLine(xml, 3);
+        xml.writeStartElement(p % 10 == 9 ? "AST23PRTl" : "AST24PRTl");
+        for (int u = 0; u < unitsPerBuilding; u++) {
+            newLine(xml, 4);
+            xml.writeStartElement("PRT00");
+            xml.writeAttribute("id", "P" + p + "-U" + u);
+            element(xml, 5, "PRT25", "RU-" + p + "-" + u);
+            element(xml, 5, "PRT24", String.valueOf(1 + random.nextInt(10) * 0.5));
+            element(xml, 5, "PRT18", String.valueOf(random.nextInt(12) - 1));
+            element(xml, 5, "PRT21", "1");
+            element(xml, 5, "PRT05", String.valueOf(10 + random.nextInt(49000) / 100.0));
+            newLine(xml, 4);
+            xml.writeEndElement(); // PRT00
+        }
+        newLine(xml, 3);
+        xml.writeEndElement(); // AST2xPRTl
+
+        newLine(xml, 3);
+        xml.writeStartElement("AST25LEAl");
+        for (int l = 0; l < leasesPerProperty; l++) {
+            newLine(xml, 4);
+            xml.writeStartElement("LEA00");
+            xml.writeAttribute("id", "P" + p + "-L" + l);
+            element(xml, 5, "LEA38", date(random, 2000, 2015));
+            element(xml, 5, "LEA05", date(random, 2015, 2030));
+            if (random.nextBoolean()) {
+                element(xml, 5, "LEA07", date(random, 2015, 2030));
+            }
+            if (unitsPerBuilding > 0) {
+                newLine(xml, 5);
+                xml.writeStartElement("LEA22aLPl");
+                int count = 1 + random.nextInt(Math.min(3, unitsPerBuilding));
+                int first = random.nextInt(unitsPerBuilding);
+                for (int i = 0; i < count; i++) {
+                    newLine(xml, 6);
+                    xml.writeEmptyElement("aLP00");
+                    xml.writeAttribute("idPRT", "P" + p + "-U" + ((first + i) % unitsPerBuilding));
+                }
+                newLine(xml, 5);
+                xml.writeEndElement(); // LEA22aLPl
+            }
+            newLine(xml, 4);
+            xml.writeEndElement(); // LEA00
+        }
+        newLine(xml, 3);
+        xml.writeEndElement(); // AST25LEAl
+
+        newLine(xml, 2);
+        xml.writeEndElement(); // AST00
+    }
+
+    private static String date(Random random, int fromYear, int toYear) {
+        int year = fromYear + random.nextInt(toYear - fromYear);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(28);
+        return year + (month < 10 ? "-0" : "-") + month + (day < 10 ? "-0" : "-") + day;
+    }
+
+    private static void element(XMLStreamWriter xml, int deep, String name, String text) throws XMLStreamException {
+        newLine(xml, deep);
+        xml.writeStartElement(name);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    private static void newLine(XMLStreamWriter xml, int deep) throws XMLStreamException {
+        StringBuilder indent = new StringBuilder("\r\n");
+        for (int i = 0; i < deep; i++) {
+            indent.append("  ");
+        }
+        xml.writeCharacters(indent.toString());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("usage: FidjiGenerator <file> <properties> <unitsPerBuilding> <leasesPerProperty> <companies> [seed]");
+            System.exit(1);
+        }
+
+        FidjiGenerator generator = new FidjiGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]), args.length > 5 ? Long.parseLong(args[5]) : 0);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[0]));
+        try {
+            generator.write(out);
+        } finally {
+            out.close();
+        }
+    }
+}
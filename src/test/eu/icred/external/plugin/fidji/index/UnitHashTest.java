@@ -0,0 +1,46 @@
+package eu.icred.external.plugin.fidji.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+/**
+ * {@link UnitHash} must give the same strings as
+ * <code>new BigInteger(1, md5).toString(16)</code>.
+ */
+public class UnitHashTest {
+
+    @Test
+    public void sameAsBigInteger() throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        int leadingZeros = 0;
+        int leadingZeroBytes = 0;
+        for (int i = 0; i < 100000; i++) {
+            String parentId = "P" + i;
+            String unitId = "U" + (i % 97);
+            byte[] digest = md.digest(("AST00" + parentId + unitId).getBytes());
+            String expected = new BigInteger(1, digest).toString(16);
+
+            assertEquals(expected, UnitHash.of("AST00", parentId, unitId));
+            if (expected.length() < 32) {
+                leadingZeros++;
+            }
+            if (expected.length() < 31) {
+                leadingZeroBytes++;
+            }
+        }
+        // about 1 in 16 and 1 in 256 digests start with a zero nibble or byte
+        assertTrue(leadingZeros > 1000);
+        assertTrue(leadingZeroBytes > 100);
+    }
+
+    @Test
+    public void emptyIds() throws Exception {
+        byte[] digest = MessageDigest.getInstance("MD5").digest("BUI00".getBytes());
+        assertEquals(new BigInteger(1, digest).toString(16), UnitHash.of("BUI00", "", ""));
+    }
+}
@@ -0,0 +1,160 @@
+package eu.icred.external.plugin.fidji.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.external.plugin.fidji.read.Reader;
+import eu.icred.external.plugin.fidji.write.Writer;
+import eu.icred.model.node.Container;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+import eu.icred.plugin.worker.output.ExportWorkerConfiguration;
+
+/**
+ * Reader and Writer report their element counts, bytes and phases.
+ */
+public class FidjiMetricsTest {
+    private static byte[] input;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        input = new FidjiGenerator(30, 4, 3, 5, 1).toByteArray();
+    }
+
+    @Test
+    public void readAndWrite() throws Exception {
+        FidjiMetrics metrics = new FidjiMetrics(true);
+        PhaseLog phases = new PhaseLog();
+        metrics.addListener(phases);
+
+        Container container = read(metrics, new ByteArrayInputStream(input), 1);
+        assertEquals(1, metrics.getImports());
+        assertCounts(metrics, true, new String(input, "UTF-8"));
+        assertEquals(input.length, metrics.getBytesRead());
+
+        byte[] output = write(metrics, container);
+        assertEquals(1, metrics.getExports());
+        assertCounts(metrics, false, new String(output, "UTF-8"));
+        assertEquals(output.length, metrics.getBytesWritten());
+
+        assertEquals(3, phases.phases.size());
+        assertEquals(Phase.PARSE, phases.phases.get(0));
+        assertEquals(Long.valueOf(input.length), phases.bytes.get(0));
+        assertEquals(Phase.LINK, phases.phases.get(1));
+        assertEquals(Long.valueOf(0), phases.bytes.get(1));
+        assertEquals(Phase.SERIALIZE, phases.phases.get(2));
+        assertEquals(Long.valueOf(output.length), phases.bytes.get(2));
+        assertTrue(metrics.getPhaseNanos(Phase.PARSE) > 0);
+        assertEquals(0, metrics.getFailures());
+    }
+
+    @Test
+    public void chunkedRead() throws Exception {
+        File file = folder.newFile("portfolio.xml");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(input);
+        } finally {
+            out.close();
+        }
+
+        FidjiMetrics metrics = new FidjiMetrics(true);
+        metrics.setHistogramEnabled(true);
+        InputStream in = new FileInputStream(file);
+        try {
+            read(metrics, in, 4);
+        } finally {
+            in.close();
+        }
+
+        assertCounts(metrics, true, new String(input, "UTF-8"));
+        assertEquals(input.length, metrics.getBytesRead());
+        assertEquals(30, metrics.getEntityLatencyCount());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        FidjiMetrics metrics = new FidjiMetrics(false);
+        PhaseLog phases = new PhaseLog();
+        metrics.addListener(phases);
+
+        write(metrics, read(metrics, new ByteArrayInputStream(input), 1));
+
+        assertEquals(0, metrics.getImports());
+        assertEquals(0, metrics.getExports());
+        assertEquals(0, metrics.getPropertiesRead());
+        assertEquals(0, metrics.getBytesWritten());
+        assertTrue(phases.phases.isEmpty());
+    }
+
+    private static void assertCounts(FidjiMetrics metrics, boolean read, String xml) {
+        assertEquals(30, count(xml, "<AST00 "));
+        assertEquals(30 * 4, count(xml, "<PRT00 "));
+        assertEquals(30 * 3, count(xml, "<LEA00 "));
+        assertEquals(5, count(xml, "<gHO00 "));
+
+        for (Entity entity : Entity.values()) {
+            long expected = count(xml, "<" + entity.name().replace("ALP", "aLP").replace("GHO", "gHO") + " ");
+            assertEquals(entity.name(), expected, read ? metrics.getElementsRead(entity) : metrics.getElementsWritten(entity));
+        }
+    }
+
+    private static int count(String xml, String tag) {
+        int count = 0;
+        for (int pos = xml.indexOf(tag); pos >= 0; pos = xml.indexOf(tag, pos + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static Container read(FidjiMetrics metrics, InputStream in, int parallelism) {
+        Reader reader = new Reader();
+        reader.setMetrics(metrics);
+        reader.setParallelism(parallelism);
+        ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+        config.getStreams().put("fidji-file", in);
+        reader.load(config);
+        reader.unload();
+        return reader.getContainer();
+    }
+
+    private static byte[] write(FidjiMetrics metrics, Container container) {
+        Writer writer = new Writer();
+        writer.setMetrics(metrics);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportWorkerConfiguration config = writer.getRequiredConfigurationArguments();
+        config.getStreams().put("fidji-file", out);
+        writer.load(config, container);
+        writer.unload();
+        return out.toByteArray();
+    }
+
+    private static class PhaseLog implements IMetricsListener {
+        final List<Phase> phases = new ArrayList<Phase>();
+        final List<Long> bytes = new ArrayList<Long>();
+
+        @Override
+        public void phaseCompleted(Phase phase, long nanos, long bytes) {
+            phases.add(phase);
+            this.bytes.add(bytes);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package eu.icred.external.plugin.fidji.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.model.node.Container;
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+
+/**
+ * {@link BatchReader} merges the periods of many files by month and skips
+ * files that can not be read.
+ */
+public class BatchReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergesByMonth() throws Exception {
+        // C0 links the even, C1 the odd properties of each file
+        write("a.xml", new FidjiGenerator(4, 2, 1, 2, 1).toByteArray());
+        write("b.xml", new FidjiGenerator(8, 2, 1, 2, 2).toByteArray());
+        write("c.xml", february(new FidjiGenerator(2, 2, 1, 3, 3).toByteArray()));
+
+        Container container = read(new ImportWorkerConfiguration());
+        assertEquals(new TreeSet<String>(container.getPeriods().keySet()), set("2015-1", "2015-2"));
+
+        Period january = container.getPeriods().get("2015-1");
+        assertEquals(set("C0", "C1"), set(january.getData().getCompanies()));
+        Map<String, Property> properties = january.getData().getCompanies().get("C0").getProperties();
+        assertEquals(set("P0", "P2", "P4", "P6"), set(properties));
+        for (Map.Entry<String, Property> property : properties.entrySet()) {
+            assertEquals(property.getKey(), property.getValue().getObjectIdSender());
+        }
+        assertEquals(set("P1", "P3", "P5", "P7"), set(january.getData().getCompanies().get("C1").getProperties()));
+
+        Period february = container.getPeriods().get("2015-2");
+        assertEquals(set("C0", "C1", "C2"), set(february.getData().getCompanies()));
+        assertEquals(set("P0"), set(february.getData().getCompanies().get("C0").getProperties()));
+        assertNull(february.getData().getCompanies().get("C2").getProperties());
+    }
+
+    @Test
+    public void firstPropertyWins() throws Exception {
+        byte[] first = new FidjiGenerator(2, 1, 1, 1, 1).toByteArray();
+        write("a.xml", first);
+        write("b.xml", new FidjiGenerator(2, 1, 1, 1, 2).toByteArray());
+
+        Property read = read(new ImportWorkerConfiguration()).getPeriods().get("2015-1").getData().getCompanies().get("C0")
+                .getProperties().get("P1");
+
+        Reader reader = new Reader();
+        ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+        config.getStreams().put(Reader.PARAMETER_NAME, new ByteArrayInputStream(first));
+        reader.load(config);
+        Property expected = reader.getContainer().getPeriods().get("2015-1").getData().getCompanies().get("C0").getProperties()
+                .get("P1");
+
+        assertEquals(expected.getAddress().getStreet(), read.getAddress().getStreet());
+        assertEquals(expected.getAddress().getZip(), read.getAddress().getZip());
+    }
+
+    @Test
+    public void skipsBrokenFiles() throws Exception {
+        byte[] complete = new FidjiGenerator(4, 2, 1, 2, 1).toByteArray();
+        write("a.xml", new FidjiGenerator(2, 2, 1, 2, 1).toByteArray());
+        write("b.xml", new String(complete, "UTF-8").substring(0, complete.length / 2).getBytes("UTF-8"));
+        write("c.xml", "no xml".getBytes("UTF-8"));
+        write("d.xml", complete);
+        write("e.xml", february(complete));
+
+        // fails with an Error, which the Reader does not catch
+        ImportWorkerConfiguration config = new ImportWorkerConfiguration();
+        config.getStreams().put("failing", new InputStream() {
+            @Override
+            public int read() {
+                throw new AssertionError("failing stream");
+            }
+        });
+
+        Container container = read(config);
+        assertEquals(set("2015-1", "2015-2"), new TreeSet<String>(container.getPeriods().keySet()));
+        Map<String, Company> companies = container.getPeriods().get("2015-1").getData().getCompanies();
+        assertEquals(set("P0", "P2"), set(companies.get("C0").getProperties()));
+        assertNotNull(companies.get("C0").getProperties().get("P2"));
+    }
+
+    private Container read(ImportWorkerConfiguration config) {
+        BatchReader reader = new BatchReader();
+        reader.setDirectory(folder.getRoot());
+        reader.setParallelism(2);
+        reader.load(config);
+        reader.unload();
+        return reader.getContainer();
+    }
+
+    private void write(String name, byte[] content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(folder.getRoot(), name));
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] february(byte[] xml) throws Exception {
+        return new String(xml, "UTF-8").replace("situation=\"2015-01-31\"", "situation=\"2015-02-28\"").getBytes("UTF-8");
+    }
+
+    private static TreeSet<String> set(Map<String, ?> map) {
+        return new TreeSet<String>(map.keySet());
+    }
+
+    private static TreeSet<String> set(String... values) {
+        TreeSet<String> set = new TreeSet<String>();
+        for (String value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+}
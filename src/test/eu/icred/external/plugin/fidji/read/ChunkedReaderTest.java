@@ -0,0 +1,293 @@
+package eu.icred.external.plugin.fidji.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.model.node.Container;
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Building;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Lease;
+import eu.icred.model.node.entity.Property;
+import eu.icred.model.node.entity.Unit;
+import eu.icred.model.node.group.Address;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+
+/**
+ * The chunked import must give the same container and the same listener
+ * events as the sequential one, also for documents it can not slice.
+ */
+public class ChunkedReaderTest {
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n";
+    private static final String ROOT = "<FIDJI version=\"2.0\" situation=\"2015-03-31\" xmlns=\"http://www.format-Fidji.org/XMLSchema-2.0\""
+            + " xmlns:x=\"http://www.format-Fidji.org/XMLSchema-2.0\">";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generatedPortfolio() throws Exception {
+        File file = folder.newFile("portfolio.xml");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            new FidjiGenerator(60, 5, 3, 7, 3).write(out);
+        } finally {
+            out.close();
+        }
+
+        assertNotNull(scan(file));
+        assertSameResult(file);
+    }
+
+    @Test
+    public void commentsCDataAndEmptyElements() throws Exception {
+        File file = write(HEADER
+                + "<!-- <FIDJI situation=\"1999-01-31\"> -->\r\n"
+                + ROOT
+                + "<?fake <ASTl>?>"
+                + "<ASTl>"
+                + "<!-- <AST00 id=\"fake\"></AST00> -->"
+                + "<AST00 id=\"P1\" name=\"a > b\">"
+                + "<AST70><![CDATA[</AST00></ASTl><AST00 id=\"cdata\">]]></AST70>"
+                + "<AST22gADl><gAD00><gAD01>Street</gAD01><gAD04>75000</gAD04><gAD05>Paris</gAD05></gAD00></AST22gADl>"
+                + "<AST24PRTl><PRT00 id=\"U1\"><PRT18>3</PRT18><PRT05>12.5</PRT05></PRT00><PRT00 id=\"U2\"/></AST24PRTl>"
+                + "<AST25LEAl><LEA00 id=\"L1\"><LEA38>2014-01-01</LEA38><LEA22aLPl><aLP00 idPRT=\"U1\"/></LEA22aLPl></LEA00></AST25LEAl>"
+                + "</AST00>\r\n"
+                + "<AST00 id=\"P2\" name='quoted > \"name\"'/>"
+                + "<AST00 id=\"P3\"><AST70>r3</AST70></AST00>"
+                + "</ASTl>"
+                + "<gHOl>"
+                + "<gHO00 id=\"C1\" name=\"one\"><gHO02 idRef-AST=\"P1\"/><!-- <gHO00 id=\"fake\"/> --><gHO02 idRef-AST=\"P3\"/></gHO00>"
+                + "<gHO00 id=\"C2\" name=\"two\"/>"
+                + "<gHO00 id=\"C3\"><gHO02 idRef-AST=\"P2\"/></gHO00>"
+                + "</gHOl>"
+                + "</FIDJI>");
+
+        BoundaryScanner.Layout layout = scan(file);
+        assertNotNull(layout);
+        assertEquals(6, layout.slices.size());
+
+        String result = assertSameResult(file);
+        assertTrue(result.contains("</AST00></ASTl><AST00 id=\"cdata\">"));
+        assertTrue(result.contains("company C2 two"));
+    }
+
+    @Test
+    public void replacedCompany() throws Exception {
+        File file = write(HEADER + ROOT
+                + "<ASTl><AST00 id=\"P1\"><AST70>r1</AST70></AST00><AST00 id=\"P2\"><AST70>r2</AST70></AST00></ASTl>"
+                + "<gHOl>"
+                + "<gHO00 id=\"C1\"><gHO02 idRef-AST=\"P1\"/></gHO00>"
+                + "<gHO00 id=\"C2\"><gHO02 idRef-AST=\"P1\"/></gHO00>"
+                + "<gHO00 id=\"C1\" name=\"c1bis\"><gHO02 idRef-AST=\"P2\"/></gHO00>"
+                + "</gHOl>"
+                + "</FIDJI>");
+
+        assertNotNull(scan(file));
+        String result = assertSameResult(file);
+        assertTrue(result.contains("company C2 null\nprop P1 P1 null r1"));
+        assertTrue(result.contains("company C1 c1bis\nprop P2 P2 null r2"));
+    }
+
+    @Test
+    public void prefixedListChild() throws Exception {
+        File file = write(HEADER + ROOT
+                + "<ASTl><AST00 id=\"B\"><AST70>first</AST70></AST00><x:AST00 id=\"B\"><AST70>second</AST70></x:AST00></ASTl>"
+                + "<gHOl><gHO00 id=\"C\" name=\"c\"><gHO02 idRef-AST=\"B\"/></gHO00></gHOl>"
+                + "</FIDJI>");
+
+        assertNull(scan(file));
+        assertTrue(assertSameResult(file).contains("prop B B null second"));
+    }
+
+    @Test
+    public void prefixedList() throws Exception {
+        File file = write(HEADER + ROOT
+                + "<x:ASTl><AST00 id=\"A\"/></x:ASTl><ASTl><AST00 id=\"B\"/></ASTl>"
+                + "<gHOl><gHO00 id=\"C\"><gHO02 idRef-AST=\"A\"/><gHO02 idRef-AST=\"B\"/></gHO00></gHOl>"
+                + "</FIDJI>");
+
+        assertNull(scan(file));
+        assertSameResult(file);
+    }
+
+    @Test
+    public void unslicedListChild() throws Exception {
+        File file = write(HEADER + ROOT
+                + "<ASTl><AST00 id=\"A\"/><AST99/><AST00 id=\"B\"/></ASTl>"
+                + "<gHOl><gHO00 id=\"C\"><gHO02 idRef-AST=\"A\"/></gHO00></gHOl>"
+                + "</FIDJI>");
+
+        assertNull(scan(file));
+        assertSameResult(file);
+    }
+
+    @Test
+    public void doctype() throws Exception {
+        File file = write(HEADER
+                + "<!DOCTYPE FIDJI [<!ENTITY city \"Paris\">]>\r\n"
+                + ROOT
+                + "<ASTl><AST00 id=\"P1\"><AST22gADl><gAD00><gAD01>Street</gAD01><gAD04>75000</gAD04><gAD05>&city;</gAD05></gAD00></AST22gADl>"
+                + "</AST00></ASTl>"
+                + "<gHOl><gHO00 id=\"C\"><gHO02 idRef-AST=\"P1\"/></gHO00></gHOl>"
+                + "</FIDJI>");
+
+        assertNull(scan(file));
+        assertTrue(assertSameResult(file).contains("Street|75000|Paris"));
+    }
+
+    private File write(String xml) throws Exception {
+        File file = folder.newFile();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(xml.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static BoundaryScanner.Layout scan(File file) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return BoundaryScanner.scan(new MappedFile(in.getChannel(), 0, 8));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads <code>file</code> sequentially and chunked, with and without a
+     * listener, and compares the results.
+     *
+     * @return the sequential result
+     */
+    private static String assertSameResult(File file) throws Exception {
+        String sequential = read(file, 1, false);
+        assertEquals(sequential, read(file, 4, false));
+
+        String events = read(file, 1, true);
+        assertEquals(events, read(file, 4, true));
+
+        return sequential;
+    }
+
+    private static String read(File file, int parallelism, boolean streaming) throws Exception {
+        Reader reader = new Reader();
+        reader.setParallelism(parallelism);
+        // one slice per task, many mapped segments
+        reader.setChunkSizes(1, 8);
+        EventLog events = new EventLog();
+        if (streaming) {
+            reader.setListener(events);
+        }
+
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+            config.getStreams().put(Reader.PARAMETER_NAME, in);
+            reader.load(config);
+            reader.unload();
+        } finally {
+            in.close();
+        }
+
+        return streaming ? events.toString() : dump(reader.getContainer());
+    }
+
+    static String dump(Container container) {
+        StringBuilder out = new StringBuilder();
+        for (Period period : container.getPeriods().values()) {
+            out.append("period ").append(period.getIdentifier()).append(' ').append(period.getFrom()).append(' ')
+                    .append(period.getTo()).append('\n');
+            for (Company company : period.getData().getCompanies().values()) {
+                out.append("company ").append(company.getObjectIdSender()).append(' ').append(company.getLabel()).append('\n');
+                if (company.getProperties() != null) {
+                    for (Map.Entry<String, Property> property : company.getProperties().entrySet()) {
+                        out.append("prop ").append(property.getKey()).append(' ');
+                        describe(out, property.getValue());
+                    }
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    static void describe(StringBuilder out, Property property) {
+        if (property == null) {
+            out.append("null\n");
+            return;
+        }
+        out.append(property.getObjectIdSender()).append(' ').append(property.getLabel()).append(' ')
+                .append(property.getObjectIdReceiver()).append(' ').append(address(property.getAddress())).append('\n');
+        for (Building building : property.getBuildings().values()) {
+            out.append(" building ").append(building.getObjectIdSender()).append(' ').append(building.getObjectIdReceiver()).append('\n');
+            if (building.getUnits() != null) {
+                for (Unit unit : building.getUnits().values()) {
+                    out.append("  unit ").append(unit.getObjectIdSender()).append(' ').append(unit.getHash()).append(' ')
+                            .append(unit.getNumberOfRooms()).append(' ').append(address(unit.getAddress())).append(' ')
+                            .append(unit.getLettableArea() == null ? null : unit.getLettableArea().getValue()).append('\n');
+                }
+            }
+        }
+        if (property.getLeases() != null) {
+            for (Lease lease : property.getLeases().values()) {
+                out.append(" lease ").append(lease.getObjectIdSender()).append(' ').append(lease.getBeginRentPayment()).append(' ')
+                        .append(lease.getLeasedUnits() == null ? null : lease.getLeasedUnits().keySet()).append('\n');
+            }
+        }
+    }
+
+    private static String address(Address address) {
+        return address == null ? "null" : address.getStreet() + "|" + address.getZip() + "|" + address.getCity() + "|" + address.getFloor();
+    }
+
+    private static class EventLog implements IImportListener {
+        private final StringBuilder out = new StringBuilder();
+
+        @Override
+        public void periodStarted(Period period) {
+            out.append("periodStarted ").append(period.getIdentifier()).append('\n');
+        }
+
+        @Override
+        public void propertyCompleted(Property property) {
+            out.append("propertyCompleted ");
+            describe(out, property);
+        }
+
+        @Override
+        public void companyPropertyLinked(Company company, String propertyId) {
+            out.append("companyPropertyLinked ").append(company.getObjectIdSender()).append(' ').append(propertyId).append('\n');
+        }
+
+        @Override
+        public void companyCompleted(Company company) {
+            out.append("companyCompleted ").append(company.getObjectIdSender()).append(' ').append(company.getLabel()).append('\n');
+        }
+
+        @Override
+        public void periodCompleted(Period period) {
+            out.append("periodCompleted ").append(period.getIdentifier()).append(' ')
+                    .append(period.getData().getCompanies().keySet()).append('\n');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
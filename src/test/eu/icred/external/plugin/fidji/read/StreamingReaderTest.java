@@ -0,0 +1,181 @@
+package eu.icred.external.plugin.fidji.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.model.node.Container;
+import eu.icred.model.node.Period;
+import eu.icred.model.node.entity.Building;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+
+/**
+ * With an {@link IImportListener} the {@link Reader} reports every entity in
+ * document order and keeps no properties in the container.
+ */
+public class StreamingReaderTest {
+    private static final int PROPERTIES = 12;
+    private static final int COMPANIES = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sequential() throws Exception {
+        byte[] input = new FidjiGenerator(PROPERTIES, 2, 1, COMPANIES, 5).toByteArray();
+        assertEvents(new ByteArrayInputStream(input), 1);
+    }
+
+    @Test
+    public void chunked() throws Exception {
+        File file = folder.newFile("portfolio.xml");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            new FidjiGenerator(PROPERTIES, 2, 1, COMPANIES, 5).write(out);
+        } finally {
+            out.close();
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            assertEvents(in, 4);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void everyLinkIsReported() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<FIDJI version=\"2.0\" situation=\"2015-03-31\" xmlns=\"http://www.format-Fidji.org/XMLSchema-2.0\">"
+                + "<ASTl><AST00 id=\"P1\"/></ASTl>"
+                + "<gHOl>"
+                + "<gHO00 id=\"C1\"><gHO02 idRef-AST=\"P1\"/><gHO02 idRef-AST=\"P1\"/><gHO02 idRef-AST=\"unknown\"/></gHO00>"
+                + "<gHO00 id=\"C2\"><gHO02 idRef-AST=\"P1\"/></gHO00>"
+                + "<gHO00 id=\"C3\"/>"
+                + "</gHOl>"
+                + "</FIDJI>";
+
+        EventLog events = new EventLog();
+        read(new ByteArrayInputStream(xml.getBytes("UTF-8")), 1, events);
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("periodStarted 2015-3");
+        expected.add("propertyCompleted P1");
+        expected.add("companyPropertyLinked C1 P1");
+        expected.add("companyPropertyLinked C1 P1");
+        expected.add("companyPropertyLinked C1 unknown");
+        expected.add("companyCompleted C1");
+        expected.add("companyPropertyLinked C2 P1");
+        expected.add("companyCompleted C2");
+        expected.add("companyCompleted C3");
+        expected.add("periodCompleted 2015-3");
+        assertEquals(expected, events.events);
+    }
+
+    private void assertEvents(InputStream in, int parallelism) {
+        EventLog events = new EventLog();
+        Container container = read(in, parallelism, events);
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("periodStarted 2015-1");
+        for (int p = 0; p < PROPERTIES; p++) {
+            expected.add("propertyCompleted P" + p);
+        }
+        for (int c = 0; c < COMPANIES; c++) {
+            for (int p = c; p < PROPERTIES; p += COMPANIES) {
+                expected.add("companyPropertyLinked C" + c + " P" + p);
+            }
+            expected.add("companyCompleted C" + c);
+        }
+        expected.add("periodCompleted 2015-1");
+        assertEquals(expected, events.events);
+
+        // the listener gets complete properties
+        for (Property property : events.properties) {
+            Building building = property.getBuildings().get(property.getObjectIdSender());
+            assertEquals(2, building.getUnits().size());
+            assertEquals(1, property.getLeases().size());
+        }
+
+        // the container only keeps the ids
+        Period period = container.getPeriods().get("2015-1");
+        assertSame(period, events.period);
+        Map<String, Company> companies = period.getData().getCompanies();
+        assertEquals(COMPANIES, companies.size());
+        for (int c = 0; c < COMPANIES; c++) {
+            Map<String, Property> properties = companies.get("C" + c).getProperties();
+            TreeSet<String> ids = new TreeSet<String>();
+            for (int p = c; p < PROPERTIES; p += COMPANIES) {
+                ids.add("P" + p);
+            }
+            assertEquals(ids, new TreeSet<String>(properties.keySet()));
+            for (Property property : properties.values()) {
+                assertNull(property);
+            }
+        }
+    }
+
+    private static Container read(InputStream in, int parallelism, IImportListener listener) {
+        Reader reader = new Reader();
+        reader.setParallelism(parallelism);
+        reader.setListener(listener);
+        ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+        config.getStreams().put(Reader.PARAMETER_NAME, in);
+        reader.load(config);
+        reader.unload();
+        return reader.getContainer();
+    }
+
+    private static class EventLog implements IImportListener {
+        final List<String> events = new ArrayList<String>();
+        final List<Property> properties = new ArrayList<Property>();
+        Period period;
+
+        @Override
+        public void periodStarted(Period period) {
+            this.period = period;
+            events.add("periodStarted " + period.getIdentifier());
+        }
+
+        @Override
+        public void propertyCompleted(Property property) {
+            properties.add(property);
+            events.add("propertyCompleted " + property.getObjectIdSender());
+        }
+
+        @Override
+        public void companyPropertyLinked(Company company, String propertyId) {
+            events.add("companyPropertyLinked " + company.getObjectIdSender() + " " + propertyId);
+        }
+
+        @Override
+        public void companyCompleted(Company company) {
+            events.add("companyCompleted " + company.getObjectIdSender());
+        }
+
+        @Override
+        public void periodCompleted(Period period) {
+            assertSame(this.period, period);
+            events.add("periodCompleted " + period.getIdentifier());
+        }
+    }
+}
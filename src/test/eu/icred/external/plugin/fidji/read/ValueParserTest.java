@@ -0,0 +1,103 @@
+package eu.icred.external.plugin.fidji.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+/**
+ * {@link ValueParser} must give the same results as
+ * {@link Double#parseDouble(String)} and {@link LocalDate#parse(String)}.
+ */
+public class ValueParserTest {
+
+    @Test
+    public void doubles() {
+        String[] texts = { "0", "1", "-1", "+1", "1.", ".5", "-.5", "-0", "-0.0", "0.000", "00012.50", "12.5", "0.1", "0.3",
+                "123456789012345", "1234567890123456", "12345678901234567890", "0.123456789012345", "0.1234567890123456789",
+                "9007199254740993", "1e3", "1E-3", " 1.5", "1.5 ", " -2 ", "0x10", "Infinity", "NaN", "1.2.3", "", "-", ".", "+",
+                "1,5", "0.0000000000000000000001", "0.00000000000000000000001" };
+        for (String text : texts) {
+            assertSameDouble(text);
+        }
+    }
+
+    @Test
+    public void randomDoubles() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int digits = 1 + random.nextInt(18);
+            StringBuilder text = new StringBuilder();
+            if (random.nextBoolean()) {
+                text.append('-');
+            }
+            int point = random.nextInt(digits + 1);
+            for (int d = 0; d < digits; d++) {
+                if (d == point) {
+                    text.append('.');
+                }
+                text.append((char) ('0' + random.nextInt(10)));
+            }
+            assertSameDouble(text.toString());
+            assertSameDouble(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(12))));
+        }
+    }
+
+    @Test
+    public void ints() {
+        assertEquals(3, ValueParser.parseInt("3"));
+        assertEquals(3, ValueParser.parseInt("3.0"));
+        assertEquals(-2, ValueParser.parseInt("-2.7"));
+    }
+
+    @Test
+    public void dates() {
+        String[] texts = { "2024-01-31", "2024-02-29", "0001-01-01", "9999-12-31", "2015-03-31", "2024-13-01", "2024-00-10",
+                "2023-02-29", "2024-04-31", "2024-01-00", "2024-1-01", "20240101", "2024-01-0a", " 2024-01-01", "2024-01-01 ",
+                "2024-01-01T00:00", "2024-01", "+2024-01-01", "-001-01-01", "" };
+        for (String text : texts) {
+            assertSameDate(text);
+        }
+    }
+
+    @Test
+    public void allDaysOfALeapYear() {
+        for (LocalDate date = new LocalDate(2024, 1, 1); date.getYear() == 2024; date = date.plusDays(1)) {
+            assertEquals(date, ValueParser.parseDate(date.toString()));
+        }
+    }
+
+    private static void assertSameDouble(String text) {
+        double expected;
+        try {
+            expected = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            try {
+                ValueParser.parseDouble(text);
+                fail("no exception for \"" + text + "\"");
+            } catch (NumberFormatException expectedException) {
+            }
+            return;
+        }
+        // compares the bits, so 0.0 and -0.0 differ
+        assertEquals("\"" + text + "\"", Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(ValueParser.parseDouble(text)));
+    }
+
+    private static void assertSameDate(String text) {
+        LocalDate expected;
+        try {
+            expected = LocalDate.parse(text);
+        } catch (IllegalArgumentException e) {
+            try {
+                ValueParser.parseDate(text);
+                fail("no exception for \"" + text + "\"");
+            } catch (IllegalArgumentException expectedException) {
+            }
+            return;
+        }
+        assertEquals("\"" + text + "\"", expected, ValueParser.parseDate(text));
+    }
+}
@@ -0,0 +1,134 @@
+package eu.icred.external.plugin.fidji.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.model.node.Container;
+import eu.icred.model.node.entity.Building;
+import eu.icred.model.node.entity.Company;
+import eu.icred.model.node.entity.Property;
+import eu.icred.model.node.entity.Unit;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+
+/**
+ * Pooling must not change what is read, and must not share mutable
+ * instances unless asked to.
+ */
+public class ValuePoolTest {
+    private static byte[] input;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        input = new FidjiGenerator(200, 10, 3, 7, 11).toByteArray();
+    }
+
+    @Test
+    public void sameAsWithoutPooling() throws Exception {
+        Reader pooled = new Reader();
+        Reader unpooled = new Reader();
+        unpooled.setPooling(false);
+
+        assertEquals(ChunkedReaderTest.dump(read(unpooled)), ChunkedReaderTest.dump(read(pooled)));
+    }
+
+    @Test
+    public void sameWithSharedAddresses() throws Exception {
+        Reader shared = new Reader();
+        shared.setSharedAddresses(true);
+        Reader unpooled = new Reader();
+        unpooled.setPooling(false);
+
+        assertEquals(ChunkedReaderTest.dump(read(unpooled)), ChunkedReaderTest.dump(read(shared)));
+    }
+
+    @Test
+    public void noSharedInstancesByDefault() throws Exception {
+        Container container = read(new Reader());
+
+        List<Object> addresses = addresses(container);
+        assertEquals(200 + 200 * 10, addresses.size());
+        assertEquals(addresses.size(), distinct(addresses));
+
+        List<Object> areas = areas(container);
+        assertEquals(200 * 10, areas.size());
+        assertEquals(areas.size(), distinct(areas));
+    }
+
+    @Test
+    public void sharedAddressesOnRequest() throws Exception {
+        Reader reader = new Reader();
+        reader.setSharedAddresses(true);
+        Container container = read(reader);
+
+        // units only have one of twelve floors
+        List<Object> addresses = addresses(container);
+        assertEquals(200 + 200 * 10, addresses.size());
+        assertTrue(distinct(addresses) <= 200 + 12);
+
+        List<Object> areas = areas(container);
+        assertEquals(areas.size(), distinct(areas));
+    }
+
+    private static Container read(Reader reader) {
+        ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+        config.getStreams().put(Reader.PARAMETER_NAME, new ByteArrayInputStream(input));
+        reader.load(config);
+        reader.unload();
+        return reader.getContainer();
+    }
+
+    /**
+     * @return the addresses of all properties and units
+     */
+    private static List<Object> addresses(Container container) {
+        List<Object> addresses = new ArrayList<Object>();
+        for (Property property : properties(container)) {
+            addresses.add(property.getAddress());
+            for (Building building : property.getBuildings().values()) {
+                for (Unit unit : building.getUnits().values()) {
+                    addresses.add(unit.getAddress());
+                }
+            }
+        }
+        return addresses;
+    }
+
+    private static List<Object> areas(Container container) {
+        List<Object> areas = new ArrayList<Object>();
+        for (Property property : properties(container)) {
+            for (Building building : property.getBuildings().values()) {
+                for (Unit unit : building.getUnits().values()) {
+                    areas.add(unit.getLettableArea());
+                }
+            }
+        }
+        return areas;
+    }
+
+    private static List<Property> properties(Container container) {
+        List<Property> properties = new ArrayList<Property>();
+        for (Company company : container.getPeriods().values().iterator().next().getData().getCompanies().values()) {
+            properties.addAll(company.getProperties().values());
+        }
+        return properties;
+    }
+
+    private static int distinct(List<Object> values) {
+        Map<Object, Boolean> distinct = new IdentityHashMap<Object, Boolean>();
+        for (Object value : values) {
+            assertTrue(value != null);
+            distinct.put(value, Boolean.TRUE);
+        }
+        return distinct.size();
+    }
+}
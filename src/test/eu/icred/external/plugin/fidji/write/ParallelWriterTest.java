@@ -0,0 +1,75 @@
+package eu.icred.external.plugin.fidji.write;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eu.icred.external.plugin.fidji.FidjiGenerator;
+import eu.icred.external.plugin.fidji.read.Reader;
+import eu.icred.model.node.Container;
+import eu.icred.plugin.worker.input.ImportWorkerConfiguration;
+import eu.icred.plugin.worker.output.ExportWorkerConfiguration;
+
+/**
+ * The parallel export must produce the same bytes as the sequential one.
+ */
+public class ParallelWriterTest {
+    private static Container container;
+
+    @BeforeClass
+    public static void readPortfolio() throws Exception {
+        byte[] input = new FidjiGenerator(300, 10, 5, 20, 7).toByteArray();
+
+        Reader reader = new Reader();
+        ImportWorkerConfiguration config = reader.getRequiredConfigurationArguments();
+        config.getStreams().put("fidji-file", new ByteArrayInputStream(input));
+        reader.load(config);
+        reader.unload();
+        container = reader.getContainer();
+    }
+
+    @Test
+    public void prettyPrint() throws Exception {
+        byte[] sequential = write(true, 1, 0);
+        assertComplete(sequential);
+        assertArrayEquals(sequential, write(true, 8, 0));
+    }
+
+    @Test
+    public void compact() throws Exception {
+        byte[] sequential = write(false, 1, 0);
+        assertComplete(sequential);
+        assertArrayEquals(sequential, write(false, 8, 0));
+    }
+
+    @Test
+    public void smallWindow() throws Exception {
+        assertArrayEquals(write(true, 1, 0), write(true, 8, 1));
+    }
+
+    private static void assertComplete(byte[] output) throws Exception {
+        String xml = new String(output, "UTF-8");
+        assertTrue(xml.contains("<AST00 id=\"P299\""));
+        assertTrue(xml.contains("<gHO00 id=\"C19\""));
+        assertTrue(xml.endsWith("</FIDJI>"));
+    }
+
+    private static byte[] write(boolean prettyPrint, int parallelism, int maxInFlight) {
+        Writer writer = new Writer();
+        writer.setPrettyPrint(prettyPrint);
+        writer.setParallelism(parallelism);
+        writer.setMaxInFlight(maxInFlight);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportWorkerConfiguration config = writer.getRequiredConfigurationArguments();
+        config.getStreams().put("fidji-file", out);
+        writer.load(config, container);
+        writer.unload();
+        return out.toByteArray();
+    }
+}